@@ -1,10 +1,70 @@
 package chihalu.blockfilter;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.fabricmc.fabric.api.event.registry.RegistryIdRemapCallback;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.registry.Registries;
 
 public class BlockFilterClient implements ClientModInitializer {
+	private static final ExecutorService PREWARM_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "BlockFilter Prewarm");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Touched on the client thread only.
+	private static boolean prewarmPending;
+	private static boolean prewarmedPermissions;
+
 	@Override
 	public void onInitializeClient() {
-		// This entrypoint is suitable for setting up client-specific logic, such as rendering.
+		// Several layout tables are indexed by raw item id, which registry sync may remap when joining a server.
+		RegistryIdRemapCallback.event(Registries.ITEM).register(state -> BlockFilterCreativeLayout.onItemIdsRemapped());
+		// Tag-backed source rules test bitsets compiled from the loaded tags, and the search index covers tags too.
+		CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> {
+			BlockFilterCreativeLayout.onTagsLoaded();
+			SearchIndexGate.forget();
+		});
+		JumpToItem.register();
+
+		BlockFilterConfig config = BlockFilterConfig.get();
+		if (config.prewarm()) {
+			// The operator level arrives in a packet after joining, so the layout is prewarmed again once it changes.
+			ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> prewarmPending = true);
+			ClientTickEvents.END_CLIENT_TICK.register(BlockFilterClient::prewarmIfStale);
+		}
+		if (config.slicedBuild()) {
+			long budgetNanos = TimeUnit.MICROSECONDS.toNanos(config.sliceBudgetMicros());
+			ClientTickEvents.END_CLIENT_TICK.register(client -> BlockFilterCreativeLayout.advanceSlicedBuild(budgetNanos));
+		}
+	}
+
+	/**
+	 * Prewarms after joining and again whenever the permissions the creative inventory would be opened with change,
+	 * either through the operator level or the operator items tab option.
+	 */
+	private static void prewarmIfStale(MinecraftClient client) {
+		if (client.world == null || client.player == null) {
+			return;
+		}
+
+		boolean hasPermissions = client.player.isCreativeLevelTwoOp() && client.options.getOperatorItemsTab().getValue();
+		if (!prewarmPending && hasPermissions == prewarmedPermissions) {
+			return;
+		}
+
+		prewarmPending = false;
+		prewarmedPermissions = hasPermissions;
+		ItemGroup.DisplayContext context = new ItemGroup.DisplayContext(client.world.getEnabledFeatures(), hasPermissions,
+				client.world.getRegistryManager());
+		BlockFilterCreativeLayout.prewarm(context, PREWARM_EXECUTOR);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package chihalu.blockfilter;
+
+import chihalu.blockfilter.mixin.client.CreativeInventoryScreenAccessor;
+import chihalu.blockfilter.mixin.client.HandledScreenAccessor;
+import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
+import net.fabricmc.fabric.api.client.screen.v1.ScreenKeyboardEvents;
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.client.option.KeyBinding;
+import net.minecraft.client.util.InputUtil;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.registry.Registries;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Creative inventory action that switches to the BlockFilter tab showing the hovered item and scrolls it into view.
+ * Unbound by default.
+ */
+final class JumpToItem {
+	private static final int COLUMNS = 9;
+	private static final int VISIBLE_ROWS = 5;
+	private static final KeyBinding KEY = new KeyBinding("key." + BlockFilter.MOD_ID + ".jump_to_item",
+			InputUtil.Type.KEYSYM, InputUtil.UNKNOWN_KEY.getCode(),
+			KeyBinding.Category.create(Identifier.of(BlockFilter.MOD_ID, "main")));
+
+	private JumpToItem() {
+	}
+
+	static void register() {
+		KeyBindingHelper.registerKeyBinding(KEY);
+		ScreenEvents.AFTER_INIT.register((client, screen, width, height) -> {
+			if (screen instanceof CreativeInventoryScreen creative) {
+				ScreenKeyboardEvents.afterKeyPress(screen).register((current, input) -> {
+					if (KEY.matchesKey(input)) {
+						jump(creative);
+					}
+				});
+			}
+		});
+	}
+
+	private static void jump(CreativeInventoryScreen screen) {
+		// Keys typed on the search tab belong to the search field.
+		if (screen.getSelectedItemGroup().getType() == ItemGroup.Type.SEARCH) {
+			return;
+		}
+
+		Slot slot = ((HandledScreenAccessor) screen).blockfilter$getFocusedSlot();
+		if (slot == null || !slot.hasStack()) {
+			return;
+		}
+
+		BlockFilterItemGroups.locate(slot.getStack().getItem()).ifPresent(location -> {
+			ItemGroup group = Registries.ITEM_GROUP.get(location.group());
+			if (group == null || !screen.setSelectedItemGroup(group)) {
+				return;
+			}
+
+			CreativeInventoryScreen.CreativeScreenHandler handler = screen.getScreenHandler();
+			int overflowRows = (handler.itemList.size() + COLUMNS - 1) / COLUMNS - VISIBLE_ROWS;
+			float position = overflowRows <= 0
+					? 0.0F
+					: MathHelper.clamp((float) (location.slot() / COLUMNS) / overflowRows, 0.0F, 1.0F);
+			((CreativeInventoryScreenAccessor) screen).blockfilter$setScrollPosition(position);
+			handler.scrollItems(position);
+		});
+	}
+}
@@ -0,0 +1,76 @@
+package chihalu.blockfilter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import net.fabricmc.fabric.api.datagen.v1.FabricDataOutput;
+import net.minecraft.data.DataOutput;
+import net.minecraft.data.DataProvider;
+import net.minecraft.data.DataWriter;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.resource.featuretoggle.FeatureFlags;
+import net.minecraft.resource.featuretoggle.FeatureSet;
+import net.minecraft.util.Identifier;
+
+/**
+ * Writes the vanilla layout for every combination of optional feature flags, with and without operator permissions,
+ * to the resource read by {@link PrecomputedLayout}.
+ */
+final class PrecomputedLayoutProvider implements DataProvider {
+	private final FabricDataOutput output;
+	private final CompletableFuture<RegistryWrapper.WrapperLookup> registries;
+
+	PrecomputedLayoutProvider(FabricDataOutput output, CompletableFuture<RegistryWrapper.WrapperLookup> registries) {
+		this.output = output;
+		this.registries = registries;
+	}
+
+	@Override
+	public CompletableFuture<?> run(DataWriter writer) {
+		return registries.thenCompose(lookup -> {
+			PrecomputedLayout.Builder builder = BlockFilterCreativeLayout.precomputedLayoutBuilder();
+			for (FeatureSet features : featureCombinations()) {
+				BlockFilterCreativeLayout.precompute(new ItemGroup.DisplayContext(features, false, lookup), builder);
+				BlockFilterCreativeLayout.precompute(new ItemGroup.DisplayContext(features, true, lookup), builder);
+			}
+
+			Path path = output.getResolvedPath(DataOutput.OutputType.RESOURCE_PACK)
+					.resolve(BlockFilter.MOD_ID)
+					.resolve("precomputed_layout.json");
+			return DataProvider.writeToPath(writer, builder.toJson(), path);
+		});
+	}
+
+	@Override
+	public String getName() {
+		return "BlockFilter precomputed layout";
+	}
+
+	/**
+	 * Returns the default features combined with every subset of the remaining known flags.
+	 */
+	private static List<FeatureSet> featureCombinations() {
+		Set<Identifier> defaults = FeatureFlags.FEATURE_MANAGER.toId(FeatureFlags.DEFAULT_ENABLED_FEATURES);
+		List<Identifier> optional = FeatureFlags.FEATURE_MANAGER.toId(FeatureFlags.FEATURE_MANAGER.getFeatureSet())
+				.stream()
+				.filter(flag -> !defaults.contains(flag))
+				.sorted((left, right) -> left.toString().compareTo(right.toString()))
+				.toList();
+
+		List<FeatureSet> combinations = new ArrayList<>();
+		for (int mask = 0; mask < 1 << optional.size(); mask++) {
+			List<Identifier> flags = new ArrayList<>(defaults);
+			for (int bit = 0; bit < optional.size(); bit++) {
+				if ((mask & (1 << bit)) != 0) {
+					flags.add(optional.get(bit));
+				}
+			}
+			combinations.add(FeatureFlags.FEATURE_MANAGER.featureSetOf(flags));
+		}
+		return combinations;
+	}
+}
@@ -0,0 +1,47 @@
+package chihalu.blockfilter;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import net.minecraft.client.search.SearchManager;
+import net.minecraft.item.ItemStack;
+
+/**
+ * Decides whether the creative inventory rebuilds the search index after a display context update. Vanilla indexes
+ * the tooltips and tags of every search tab stack on each update, even when the search tab contents did not change,
+ * so the index is only rebuilt when their fingerprint differs from the one last indexed. Touched on the client thread
+ * only.
+ */
+public final class SearchIndexGate {
+	private static WeakReference<SearchManager> indexedManager = new WeakReference<>(null);
+	private static long indexedFingerprint;
+	private static WeakReference<List<ItemStack>> checkedStacks = new WeakReference<>(null);
+	private static boolean checkedResult;
+
+	private SearchIndexGate() {
+	}
+
+	/**
+	 * Returns whether {@code manager} has to index {@code stacks}. Vanilla hands the same list to the tooltip and the
+	 * tag index, so both get the same answer.
+	 */
+	public static boolean shouldReindex(SearchManager manager, List<ItemStack> stacks) {
+		if (checkedStacks.get() != stacks) {
+			long fingerprint = VanillaCreativeContent.fingerprint(stacks);
+			checkedResult = indexedManager.get() != manager || fingerprint != indexedFingerprint;
+			checkedStacks = new WeakReference<>(stacks);
+			indexedManager = new WeakReference<>(manager);
+			indexedFingerprint = fingerprint;
+		}
+		return checkedResult;
+	}
+
+	/**
+	 * Makes the next update rebuild the index. Tag membership is indexed but not fingerprinted, so this is called
+	 * whenever tags are loaded.
+	 */
+	static void forget() {
+		indexedManager = new WeakReference<>(null);
+		checkedStacks = new WeakReference<>(null);
+	}
+}
@@ -0,0 +1,12 @@
+package chihalu.blockfilter.mixin.client;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+
+@Mixin(CreativeInventoryScreen.class)
+public interface CreativeInventoryScreenAccessor {
+	@Accessor("scrollPosition")
+	void blockfilter$setScrollPosition(float scrollPosition);
+}
@@ -0,0 +1,33 @@
+package chihalu.blockfilter.mixin.client;
+
+import java.util.List;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import chihalu.blockfilter.SearchIndexGate;
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.client.search.SearchManager;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.RegistryWrapper;
+
+@Mixin(CreativeInventoryScreen.class)
+public abstract class CreativeInventoryScreenMixin {
+	@Redirect(method = "populateDisplay", at = @At(value = "INVOKE",
+			target = "Lnet/minecraft/client/search/SearchManager;addItemTooltipReloader(Lnet/minecraft/registry/RegistryWrapper$WrapperLookup;Ljava/util/List;)V"))
+	private void blockfilter$reindexTooltipsIfChanged(SearchManager manager, RegistryWrapper.WrapperLookup registries,
+			List<ItemStack> stacks) {
+		if (SearchIndexGate.shouldReindex(manager, stacks)) {
+			manager.addItemTooltipReloader(registries, stacks);
+		}
+	}
+
+	@Redirect(method = "populateDisplay", at = @At(value = "INVOKE",
+			target = "Lnet/minecraft/client/search/SearchManager;addItemTagReloader(Ljava/util/List;)V"))
+	private void blockfilter$reindexTagsIfChanged(SearchManager manager, List<ItemStack> stacks) {
+		if (SearchIndexGate.shouldReindex(manager, stacks)) {
+			manager.addItemTagReloader(stacks);
+		}
+	}
+}
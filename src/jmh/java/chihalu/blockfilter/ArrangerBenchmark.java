@@ -0,0 +1,65 @@
+package chihalu.blockfilter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each arranger's ordering over the corpus paths it would plausibly receive, selected by the base it detects. The
+ * stacks themselves are left out; reordering them is a plain copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArrangerBenchmark {
+	@Param({ItemCorpus.VANILLA, "10000", "50000", "100000"})
+	public String corpus;
+
+	private ItemPathInfo[] wood;
+	private ItemPathInfo[] stone;
+	private ItemPathInfo[] copper;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ItemCorpus.bootstrap();
+		ItemPathInfo[] infos = ItemCorpus.parseAll(ItemCorpus.paths(corpus));
+		wood = select(infos, info -> info.woodBaseIndex() >= 0);
+		stone = select(infos, info -> info.stoneBaseIndex() >= 0);
+		copper = select(infos, info -> info.copperBaseIndex() >= 0);
+	}
+
+	@Benchmark
+	public int[] arrangeWoodStructures() {
+		return BlockFilterCreativeLayout.woodStructureOrder(wood);
+	}
+
+	@Benchmark
+	public int[] arrangeStoneBlocks() {
+		return BlockFilterCreativeLayout.stoneBlockOrder(stone);
+	}
+
+	@Benchmark
+	public int[] arrangeCopperBlocks() {
+		return BlockFilterCreativeLayout.copperBlockOrder(copper);
+	}
+
+	private static ItemPathInfo[] select(ItemPathInfo[] infos, Predicate<ItemPathInfo> filter) {
+		return Arrays.stream(infos).filter(filter).toArray(ItemPathInfo[]::new);
+	}
+}
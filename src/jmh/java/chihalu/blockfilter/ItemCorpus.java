@@ -0,0 +1,216 @@
+package chihalu.blockfilter;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Blocks;
+import net.minecraft.item.BlockItem;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemGroup;
+import net.minecraft.item.ItemGroups;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.BuiltinRegistries;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.Registry;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.SimpleRegistry;
+import net.minecraft.resource.featuretoggle.FeatureSet;
+import net.minecraft.util.Identifier;
+
+/**
+ * Fixed item path lists the benchmarks run against: the vanilla item registry, or a synthetic modpack of a given
+ * size.
+ *
+ * <p>Synthetic lists are seeded, so every run sees the same paths. They start with the vanilla list and add mod items
+ * named the way mods usually name them: a material from a vanilla-style vocabulary combined with a shape, plus the
+ * odd prefixed variant, tool and ingredient.
+ */
+final class ItemCorpus {
+	static final String VANILLA = "vanilla";
+
+	private static final String MOD_NAMESPACE = "modpack";
+	private static final String BUILDING_BLOCKS = "minecraft:building_blocks";
+
+	private static final long SEED = 0x426c6f636bL;
+	private static final String[] MATERIALS = {
+			"ironwood", "ebony", "maple", "willow", "redwood", "palm", "baobab", "cypress", "fir", "magnolia",
+			"marble", "slate", "limestone", "basalt", "gneiss", "shale", "jasper", "travertine", "soapstone",
+			"tin", "bronze", "brass", "zinc", "silver", "lead", "nickel", "steel", "aluminum", "osmium",
+			"copper", "oak", "spruce", "stone", "cobblestone", "deepslate", "tuff", "andesite", "granite"
+	};
+	private static final String[] SHAPES = {
+			"log", "wood", "planks", "stairs", "slab", "fence", "fence_gate", "door", "trapdoor", "pressure_plate",
+			"button", "sign", "hanging_sign", "boat", "leaves", "sapling", "wall", "bricks", "brick_stairs",
+			"brick_slab", "brick_wall", "tiles", "pillar", "block", "ore", "glass", "pane", "lantern", "bars",
+			"chain", "grate", "bulb", "panel", "column", "shingles", "beam"
+	};
+	private static final String[] PREFIXES = {
+			"polished", "chiseled", "cracked", "mossy", "smooth", "cut", "stripped", "waxed", "exposed", "weathered",
+			"oxidized"
+	};
+	private static final String[] ITEMS = {
+			"ingot", "nugget", "dust", "plate", "gear", "rod", "wire", "sword", "pickaxe", "axe", "shovel", "hoe",
+			"helmet", "chestplate", "leggings", "boots", "spawn_egg", "seeds", "pie", "stew", "potion", "book"
+	};
+	private static final String[] MOD_IDS = {
+			"create", "mekanism", "biomesoplenty", "quark", "chisel", "immersive", "thermal", "farmersdelight",
+			"supplementaries", "twilight", "ae2", "botania", "tconstruct", "alexsmobs", "macaw"
+	};
+	private static volatile boolean bootstrapped;
+
+	private ItemCorpus() {
+	}
+
+	/**
+	 * Loads the game's registries, which hold the vanilla corpus and which the layout's static category definitions
+	 * touch on first use.
+	 */
+	static synchronized void bootstrap() {
+		if (!bootstrapped) {
+			SharedConstants.createGameVersion();
+			Bootstrap.initialize();
+			bootstrapped = true;
+		}
+	}
+
+	/**
+	 * Returns the paths of {@code name}: {@value #VANILLA}, or the size of a synthetic list.
+	 */
+	static List<String> paths(String name) {
+		return VANILLA.equals(name) ? vanilla() : synthetic(Integer.parseInt(name));
+	}
+
+	/**
+	 * Returns the source groups of {@code name} as the layout captures them, taken from the game's item groups for
+	 * {@code features}. A synthetic corpus registers its mod items first and lists the block items at the end of the
+	 * building blocks group, where mods usually add theirs.
+	 */
+	static List<BlockFilterCreativeLayout.CapturedGroup> capturedGroups(String name, FeatureSet features) {
+		bootstrap();
+		List<ItemStack> modBlocks = new ArrayList<>();
+		if (!VANILLA.equals(name)) {
+			for (Item item : register(modItems(Integer.parseInt(name) - vanilla().size()))) {
+				modBlocks.add(new ItemStack(item));
+			}
+		}
+
+		ItemGroups.updateDisplayContext(features, false, BuiltinRegistries.createWrapperLookup());
+		List<BlockFilterCreativeLayout.CapturedGroup> captured = new ArrayList<>();
+		for (ItemGroup group : VanillaCreativeContent.sourceGroups()) {
+			String groupId = Registries.ITEM_GROUP.getId(group).toString();
+			List<ItemStack> stacks = new ArrayList<>(group.getDisplayStacks());
+			if (BUILDING_BLOCKS.equals(groupId)) {
+				stacks.addAll(modBlocks);
+			}
+			captured.add(new BlockFilterCreativeLayout.CapturedGroup(groupId, stacks));
+		}
+		return captured;
+	}
+
+	static ItemPathInfo[] parseAll(List<String> paths) {
+		ItemPathInfo[] infos = new ItemPathInfo[paths.size()];
+		for (int i = 0; i < infos.length; i++) {
+			infos[i] = ItemPathInfo.parse(paths.get(i));
+		}
+		return infos;
+	}
+
+	/**
+	 * Returns the path of every item the game registers, in raw id order, leaving out air and the mod items registered
+	 * by {@link #capturedGroups}.
+	 */
+	static List<String> vanilla() {
+		bootstrap();
+		List<String> paths = new ArrayList<>();
+		for (Item item : Registries.ITEM) {
+			Identifier id = Registries.ITEM.getId(item);
+			if (item != Items.AIR && !MOD_NAMESPACE.equals(id.getNamespace())) {
+				paths.add(id.getPath());
+			}
+		}
+		return paths;
+	}
+
+	static List<String> synthetic(int size) {
+		List<String> paths = vanilla();
+		paths.addAll(modItems(size - paths.size()).keySet());
+		return paths;
+	}
+
+	/**
+	 * Generates {@code count} mod item paths that no vanilla item uses, each mapped to whether it names a block.
+	 */
+	private static Map<String, Boolean> modItems(int count) {
+		Random random = new Random(SEED);
+		Set<String> taken = new HashSet<>(vanilla());
+		Map<String, Boolean> items = new LinkedHashMap<>();
+		int counter = 0;
+		while (items.size() < count) {
+			String material = pick(random, MATERIALS);
+			int kind = random.nextInt(10);
+			String path = switch (kind) {
+				case 0, 1 -> material + "_" + pick(random, ITEMS);
+				case 2 -> pick(random, PREFIXES) + "_" + material + "_" + pick(random, SHAPES);
+				default -> material + "_" + pick(random, SHAPES);
+			};
+			if (!taken.add(path)) {
+				// Mods repeat vanilla-style names under their own suffixes once the plain ones are taken.
+				path = path + "_" + pick(random, MOD_IDS) + "_" + counter++;
+				taken.add(path);
+			}
+			items.put(path, kind >= 2);
+		}
+		return items;
+	}
+
+	/**
+	 * Registers {@code items} in the mod namespace, as block items or plain items, and returns the block items. The
+	 * item registry is frozen once bootstrapped, so it is reopened for the duration; items registered by an earlier
+	 * call are reused.
+	 */
+	private static List<Item> register(Map<String, Boolean> items) {
+		SimpleRegistry<Item> registry = (SimpleRegistry<Item>) Registries.ITEM;
+		setRegistryField(registry, "frozen", false);
+		setRegistryField(registry, "intrusiveValueToEntry", new IdentityHashMap<>());
+
+		List<Item> blockItems = new ArrayList<>();
+		items.forEach((path, isBlock) -> {
+			RegistryKey<Item> key = RegistryKey.of(RegistryKeys.ITEM, Identifier.of(MOD_NAMESPACE, path));
+			Item item = registry.getOptionalValue(Identifier.of(MOD_NAMESPACE, path)).orElseGet(() -> {
+				Item.Settings settings = new Item.Settings().registryKey(key);
+				return Registry.register(registry, key,
+						isBlock ? new BlockItem(Blocks.STONE, settings) : new Item(settings));
+			});
+			if (isBlock) {
+				blockItems.add(item);
+			}
+		});
+		registry.freeze();
+		return blockItems;
+	}
+
+	private static void setRegistryField(SimpleRegistry<Item> registry, String name, Object value) {
+		try {
+			Field field = SimpleRegistry.class.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(registry, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot reopen the item registry", e);
+		}
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+}
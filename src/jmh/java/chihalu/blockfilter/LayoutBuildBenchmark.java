@@ -0,0 +1,66 @@
+package chihalu.blockfilter;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.resource.featuretoggle.FeatureFlags;
+
+/**
+ * A whole layout build along the game's own path: route the captured source groups, assemble the snapshot and
+ * arrange every category.
+ *
+ * <p>Item tags are not loaded outside a world, so tag-backed sources match nothing. Classifications stay cached
+ * across invocations, as they do between rebuilds in game, but every category is arranged again each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBuildBenchmark {
+	@Param({ItemCorpus.VANILLA, "10000", "50000", "100000"})
+	public String corpus;
+
+	@Param({"false", "true"})
+	public boolean parallel;
+
+	private List<BlockFilterCreativeLayout.CapturedGroup> captured;
+	private BlockFilterCreativeLayout.SnapshotKey key;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		captured = ItemCorpus.capturedGroups(corpus, FeatureFlags.DEFAULT_ENABLED_FEATURES);
+		key = new BlockFilterCreativeLayout.SnapshotKey(FeatureFlags.DEFAULT_ENABLED_FEATURES, false, 0);
+		pool = parallel ? new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public BlockFilterCreativeLayout.LayoutSnapshot build() {
+		BlockFilterCreativeLayout.definitions().forEach(BlockFilterCreativeLayout.CategoryDefinition::forgetArranged);
+		return BlockFilterCreativeLayout.LayoutSnapshot.route(captured, key, null, pool).arrangeAll(pool);
+	}
+}
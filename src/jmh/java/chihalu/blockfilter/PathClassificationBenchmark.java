@@ -0,0 +1,105 @@
+package chihalu.blockfilter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-path classification: parsing, each detector on its own, and the omit check over the resulting tokens. Every
+ * invocation walks the whole corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathClassificationBenchmark {
+	@Param({ItemCorpus.VANILLA, "10000", "50000", "100000"})
+	public String corpus;
+
+	private String[] paths;
+	private ItemPathInfo[] infos;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ItemCorpus.bootstrap();
+		List<String> corpusPaths = ItemCorpus.paths(corpus);
+		paths = corpusPaths.toArray(new String[0]);
+		infos = ItemCorpus.parseAll(corpusPaths);
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.parse(path));
+		}
+	}
+
+	@Benchmark
+	public void detectWoodBase(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.detectWoodBase(path));
+		}
+	}
+
+	@Benchmark
+	public void detectWoodShape(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.detectWoodShape(path));
+		}
+	}
+
+	@Benchmark
+	public void detectStoneBase(Blackhole blackhole) {
+		for (String path : paths) {
+			// Whole-path ranges; parse narrows them to the normalized path and family as well.
+			blackhole.consume(ItemPathInfo.detectBase(path, 0, path.length(), path.length(), ItemPathInfo.STONE_BASES));
+		}
+	}
+
+	@Benchmark
+	public void detectCopperBase(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.detectBase(path, 0, path.length(), path.length(), ItemPathInfo.COPPER_BASES));
+		}
+	}
+
+	@Benchmark
+	public void detectCopperVariant(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.detectCopperVariant(path));
+		}
+	}
+
+	@Benchmark
+	public void detectVariantPrefix(Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(ItemPathInfo.detectVariantPrefix(path));
+		}
+	}
+
+	@Benchmark
+	public int shouldOmit() {
+		int omitted = 0;
+		for (ItemPathInfo info : infos) {
+			if (BlockFilterCreativeLayout.isOmitted(BlockFilterCreativeLayout.pathTokens(info))) {
+				omitted++;
+			}
+		}
+		return omitted;
+	}
+}
@@ -0,0 +1,173 @@
+package chihalu.blockfilter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+/**
+ * User options read from {@code config/blockfilter.properties}. Missing keys fall back to their defaults and the file
+ * is rewritten with every known key whenever one is missing.
+ */
+final class BlockFilterConfig {
+	private static final String FILE_NAME = BlockFilter.MOD_ID + ".properties";
+	private static final String KEY_PREWARM = "prewarm";
+	private static final String KEY_SLICED_BUILD = "slicedBuild";
+	private static final String KEY_LAYOUT_CACHE = "layoutCache";
+	private static final String KEY_SLICE_BUDGET_MICROS = "sliceBudgetMicros";
+	private static final String KEY_SNAPSHOT_CACHE_SIZE = "snapshotCacheSize";
+	private static final String KEY_SEARCH_VISIBILITY = "searchVisibility";
+	private static final String KEY_PARALLEL_BUILD = "parallelBuild";
+	private static final int DEFAULT_SLICE_BUDGET_MICROS = 2000;
+	private static final int DEFAULT_SNAPSHOT_CACHE_SIZE = 4;
+	private static final SearchVisibility DEFAULT_SEARCH_VISIBILITY = SearchVisibility.PARENT_AND_SEARCH;
+	private static final List<String> KEYS = List.of(KEY_PREWARM, KEY_SLICED_BUILD, KEY_SLICE_BUDGET_MICROS,
+			KEY_LAYOUT_CACHE, KEY_SNAPSHOT_CACHE_SIZE, KEY_SEARCH_VISIBILITY, KEY_PARALLEL_BUILD);
+
+	private static BlockFilterConfig instance;
+
+	private final boolean prewarm;
+	private final boolean slicedBuild;
+	private final int sliceBudgetMicros;
+	private final boolean layoutCache;
+	private final int snapshotCacheSize;
+	private final SearchVisibility searchVisibility;
+	private final boolean parallelBuild;
+
+	private BlockFilterConfig(Properties properties) {
+		this.prewarm = Boolean.parseBoolean(properties.getProperty(KEY_PREWARM, "false"));
+		this.slicedBuild = Boolean.parseBoolean(properties.getProperty(KEY_SLICED_BUILD, "false"));
+		this.sliceBudgetMicros = parsePositive(properties, KEY_SLICE_BUDGET_MICROS, DEFAULT_SLICE_BUDGET_MICROS);
+		this.layoutCache = Boolean.parseBoolean(properties.getProperty(KEY_LAYOUT_CACHE, "true"));
+		this.snapshotCacheSize = parsePositive(properties, KEY_SNAPSHOT_CACHE_SIZE, DEFAULT_SNAPSHOT_CACHE_SIZE);
+		this.searchVisibility = parseVisibility(properties, KEY_SEARCH_VISIBILITY, DEFAULT_SEARCH_VISIBILITY);
+		this.parallelBuild = Boolean.parseBoolean(properties.getProperty(KEY_PARALLEL_BUILD, "false"));
+	}
+
+	static synchronized BlockFilterConfig get() {
+		if (instance == null) {
+			instance = load(FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME));
+		}
+		return instance;
+	}
+
+	/**
+	 * Whether the layout is built on a background thread as soon as a world is joined.
+	 */
+	boolean prewarm() {
+		return prewarm;
+	}
+
+	/**
+	 * Whether a missing layout is built a slice at a time from the client tick instead of all at once.
+	 */
+	boolean slicedBuild() {
+		return slicedBuild;
+	}
+
+	/**
+	 * Time a sliced build may spend per client tick, in microseconds.
+	 */
+	int sliceBudgetMicros() {
+		return sliceBudgetMicros;
+	}
+
+	/**
+	 * Whether arranged layouts are kept on disk and reused across launches.
+	 */
+	boolean layoutCache() {
+		return layoutCache;
+	}
+
+	/**
+	 * Number of recently used layouts kept in memory, so that switching back to a previous context is a lookup.
+	 */
+	int snapshotCacheSize() {
+		return snapshotCacheSize;
+	}
+
+	/**
+	 * Search tab visibility of categories that do not choose their own.
+	 */
+	SearchVisibility searchVisibility() {
+		return searchVisibility;
+	}
+
+	/**
+	 * Whether layouts are classified and arranged across all cores once vanilla content has been captured.
+	 */
+	boolean parallelBuild() {
+		return parallelBuild;
+	}
+
+	private static int parsePositive(Properties properties, String key, int defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int parsed = Integer.parseInt(value.trim());
+			if (parsed > 0) {
+				return parsed;
+			}
+		} catch (NumberFormatException ignored) {
+		}
+		BlockFilter.LOGGER.warn("Invalid value '{}' for {}, using {}", value, key, defaultValue);
+		return defaultValue;
+	}
+
+	private static SearchVisibility parseVisibility(Properties properties, String key, SearchVisibility defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		SearchVisibility parsed = SearchVisibility.byConfigName(value);
+		if (parsed != null) {
+			return parsed;
+		}
+		BlockFilter.LOGGER.warn("Invalid value '{}' for {}, using {}", value, key, defaultValue.configName());
+		return defaultValue;
+	}
+
+	private static BlockFilterConfig load(Path file) {
+		Properties properties = new Properties();
+		if (Files.isRegularFile(file)) {
+			try (Reader reader = Files.newBufferedReader(file)) {
+				properties.load(reader);
+			} catch (IOException e) {
+				BlockFilter.LOGGER.warn("Failed to read {}, using defaults", file, e);
+				return new BlockFilterConfig(new Properties());
+			}
+		}
+
+		BlockFilterConfig config = new BlockFilterConfig(properties);
+		if (!properties.stringPropertyNames().containsAll(KEYS)) {
+			config.save(file);
+		}
+		return config;
+	}
+
+	private void save(Path file) {
+		Properties properties = new Properties();
+		properties.setProperty(KEY_PREWARM, Boolean.toString(prewarm));
+		properties.setProperty(KEY_SLICED_BUILD, Boolean.toString(slicedBuild));
+		properties.setProperty(KEY_SLICE_BUDGET_MICROS, Integer.toString(sliceBudgetMicros));
+		properties.setProperty(KEY_LAYOUT_CACHE, Boolean.toString(layoutCache));
+		properties.setProperty(KEY_SNAPSHOT_CACHE_SIZE, Integer.toString(snapshotCacheSize));
+		properties.setProperty(KEY_SEARCH_VISIBILITY, searchVisibility.configName());
+		properties.setProperty(KEY_PARALLEL_BUILD, Boolean.toString(parallelBuild));
+		try {
+			Files.createDirectories(file.getParent());
+			try (Writer writer = Files.newBufferedWriter(file)) {
+				properties.store(writer, "BlockFilter options");
+			}
+		} catch (IOException e) {
+			BlockFilter.LOGGER.warn("Failed to write {}", file, e);
+		}
+	}
+}
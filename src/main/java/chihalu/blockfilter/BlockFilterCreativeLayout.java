@@ -4,20 +4,32 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.function.UnaryOperator;
 
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemGroup;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
 import net.minecraft.registry.Registries;
+import net.minecraft.registry.tag.ItemTags;
+import net.minecraft.registry.tag.TagKey;
 import net.minecraft.resource.featuretoggle.FeatureSet;
 import net.minecraft.util.Identifier;
 
@@ -57,55 +69,23 @@ final class BlockFilterCreativeLayout {
 			"blaze_powder", "blaze_rod", "rabbit_foot", "phantom_membrane", "prismarine_shard", "prismarine_crystals",
 			"heart_of_the_sea", "nether_star", "echo_shard", "amethyst_shard"
 	};
-        private static final List<String> WOOD_BASES = List.of(
-                        "oak", "spruce", "birch", "jungle", "acacia", "dark_oak", "mangrove", "crimson", "warped", "bamboo",
-                        "cherry", "pale_oak"
-        );
-        private static final List<String> WOOD_SHAPE_ORDER = List.of(
-                        "log", "wood", "stem", "hyphae",
-                        "planks", "mosaic", "stairs", "slab",
-                        "fence", "fence_gate", "door", "trapdoor", "pressure_plate", "button",
-                        "sign", "wall_sign", "hanging_sign",
-                        "boat", "chest_boat", "raft", "chest_raft",
-                        "leaves", "sapling", "propagule", "roots", "fungus"
-        );
-        private static final List<String> COMMON_SHAPE_SUFFIXES = List.of(
-                        "pressure_plate", "fence_gate", "hanging_sign", "wall_sign", "trapdoor", "door",
-                        "stairs", "slab", "button", "fence", "gate", "wall", "pillar", "planks",
-                        "mosaic", "log", "wood", "stem", "hyphae", "boat", "chest_boat",
-                        "raft", "chest_raft", "leaves", "sapling", "propagule", "roots", "fungus",
-                        "panel", "tile", "tiles", "bricks", "brick", "pane", "glass", "bars",
-                        "chain", "torch", "lantern", "campfire", "beacon", "grate", "bulb"
-        );
-        private static final List<String> STONE_BASES = List.of(
-                        "stone", "smooth_stone", "stone_brick", "stone_bricks", "cobblestone", "granite", "polished_granite",
-                        "diorite", "polished_diorite", "andesite", "polished_andesite", "tuff", "polished_tuff", "calcite",
-                        "dripstone_block", "basalt", "smooth_basalt", "blackstone", "polished_blackstone",
-                        "polished_blackstone_brick", "polished_blackstone_bricks", "blackstone_brick", "blackstone_bricks",
-                        "deepslate", "cobbled_deepslate", "polished_deepslate", "deepslate_brick", "deepslate_bricks",
-                        "deepslate_tile", "deepslate_tiles", "mud_brick", "mud_bricks", "packed_mud", "quartz", "smooth_quartz",
-                        "quartz_brick", "quartz_bricks", "cut_quartz", "end_stone", "end_stone_bricks", "purpur", "prismarine",
-                        "prismarine_bricks", "dark_prismarine", "resin_bricks"
-        );
         private static final List<String> STONE_SHAPE_ORDER = List.of(
                         "", "bricks", "tiles", "pillar", "stairs", "slab", "wall", "pressure_plate", "button"
         );
-        private static final List<String> COPPER_BASES = List.of(
-                        "copper_block", "cut_copper", "chiseled_copper", "copper", "raw_copper_block"
-        );
         private static final List<String> COPPER_SHAPE_ORDER = List.of(
                         "", "stairs", "slab", "door", "trapdoor", "bars", "chain", "grate", "bulb"
         );
         private static final List<String> COPPER_VARIANT_ORDER = List.of(
                         "", "exposed", "weathered", "oxidized", "waxed", "waxed_exposed", "waxed_weathered", "waxed_oxidized"
         );
-        private static final Set<String> COPPER_STAGE_PREFIXES = Set.of(
-                        "exposed", "weathered", "oxidized"
-        );
-        private static final Set<String> VARIANT_PREFIXES = Set.of(
-                        "waxed", "exposed", "weathered", "oxidized", "stripped", "mossy", "cracked", "infested",
-                        "chiseled", "smooth", "polished", "cut"
-        );
+	// Rank tables indexed by vocabulary index + 1, so that slot 0 covers an empty shape or variant.
+	private static final int[] VARIANT_RANKS = RankedSort.rankTable(ItemPathInfo.VARIANT_PREFIXES, List.of(""));
+	private static final int[] COPPER_VARIANT_RANKS = RankedSort.rankTable(ItemPathInfo.COPPER_VARIANTS,
+			COPPER_VARIANT_ORDER);
+	private static final int[] STONE_SHAPE_INDEX = RankedSort.indexTable(ItemPathInfo.COMMON_SHAPE_SUFFIXES,
+			STONE_SHAPE_ORDER);
+	private static final int[] COPPER_SHAPE_INDEX = RankedSort.indexTable(ItemPathInfo.COMMON_SHAPE_SUFFIXES,
+			COPPER_SHAPE_ORDER);
         private static final String[] NETHER_KEYWORDS = {
                         "nether", "crimson", "warped", "basalt", "blackstone", "quartz", "soul", "magma", "shroomlight",
                         "ancient_debris", "nylium", "fungus", "roots", "wart"
@@ -116,25 +96,135 @@ final class BlockFilterCreativeLayout {
         private static final String[] SAND_KEYWORDS = {
                         "sand", "sandstone", "terracotta", "clay", "mud", "gravel"
         };
+	private static final String[] STONE_KEYWORDS = {
+			"stone", "brick", "deepslate", "granite", "andesite", "diorite", "blackstone", "basalt", "calcite", "tuff",
+			"slate", "marble", "tile", "pillar", "cobblestone", "mud_brick", "resin", "prismarine", "quartz"
+	};
+	private static final String[] WORKSTATION_KEYWORDS = {
+			"table", "furnace", "anvil", "stonecutter", "grindstone", "cartography", "smithing", "loom", "campfire",
+			"smoker", "blast_furnace", "composter", "hopper", "dropper", "dispenser", "target", "chest", "barrel",
+			"shulker_box", "jukebox", "note_block", "lectern", "bell", "armor_stand", "banner_pattern"
+	};
+	private static final String[] UTILITY_KEYWORDS = {
+			"scaffolding", "ladder", "rail", "path", "door_mat", "bell", "waystone", "sign", "hanging_sign", "crate"
+	};
+
+	// Keyword families reported by KEYWORDS; each bit is set when any keyword of that family occurs in the path.
+	// Together with the derived TOKEN_* bits below they form the token set that TokenRules test.
+	private static final long FAMILY_COPPER = 1L;
+	private static final long FAMILY_ORE = 1L << 1;
+	private static final long FAMILY_FOOD = 1L << 2;
+	private static final long FAMILY_SPAWN_EGG = 1L << 3;
+	private static final long FAMILY_COMBAT = 1L << 4;
+	private static final long FAMILY_POTION = 1L << 5;
+	private static final long FAMILY_BOOK = 1L << 6;
+	private static final long FAMILY_PATTERN = 1L << 7;
+	private static final long FAMILY_HARNESS = 1L << 8;
+	private static final long FAMILY_MATERIAL = 1L << 9;
+	private static final long FAMILY_STONE = 1L << 10;
+	private static final long FAMILY_SAND = 1L << 11;
+	private static final long FAMILY_NETHER = 1L << 12;
+	private static final long FAMILY_END = 1L << 13;
+	private static final long FAMILY_WORKSTATION = 1L << 14;
+	private static final long FAMILY_UTILITY = 1L << 15;
+	private static final long OMIT_FAMILIES = FAMILY_FOOD | FAMILY_SPAWN_EGG | FAMILY_COMBAT | FAMILY_POTION | FAMILY_BOOK
+			| FAMILY_PATTERN | FAMILY_HARNESS | FAMILY_MATERIAL;
+	private static final KeywordMatcher KEYWORDS = KeywordMatcher.builder()
+			.add(FAMILY_COPPER, "copper")
+			.add(FAMILY_ORE, "ore")
+			.add(FAMILY_FOOD, FOOD_KEYWORDS)
+			.add(FAMILY_SPAWN_EGG, "spawn_egg")
+			.add(FAMILY_COMBAT, COMBAT_KEYWORDS)
+			.add(FAMILY_POTION, POTION_KEYWORDS)
+			.add(FAMILY_BOOK, BOOK_KEYWORDS)
+			.add(FAMILY_PATTERN, PATTERN_KEYWORDS)
+			.add(FAMILY_HARNESS, HARNESS_KEYWORDS)
+			.add(FAMILY_MATERIAL, MATERIAL_KEYWORDS)
+			.add(FAMILY_STONE, STONE_KEYWORDS)
+			.add(FAMILY_SAND, SAND_KEYWORDS)
+			.add(FAMILY_NETHER, NETHER_KEYWORDS)
+			.add(FAMILY_END, END_KEYWORDS)
+			.add(FAMILY_WORKSTATION, WORKSTATION_KEYWORDS)
+			.add(FAMILY_UTILITY, UTILITY_KEYWORDS)
+			.build();
+
+	// Tokens derived from the item itself rather than from keyword families.
+	private static final long TOKEN_OMIT = 1L << 32;
+	private static final long TOKEN_BLOCK_ITEM = 1L << 33;
+	private static final long TOKEN_WOOD_BASE = 1L << 34;
+	private static final long TOKEN_WOOD_SHAPE = 1L << 35;
+	private static final long TOKEN_COPPER_BASE = 1L << 36;
+	private static final long TOKEN_WORKSTATION_ITEM = 1L << 37;
+	private static final long TOKEN_UTILITY_ITEM = 1L << 38;
+	private static final ItemClassificationTable CLASSIFICATION =
+			new ItemClassificationTable(BlockFilterCreativeLayout::tokenize);
+
+	// === filters ====================================================================================================
+
+	private static final TokenRule WOOD_OR_BAMBOO_STRUCTURE = TokenRule.of()
+			.all(TOKEN_WOOD_BASE)
+			.any(TOKEN_BLOCK_ITEM | TOKEN_WOOD_SHAPE)
+			.none(TOKEN_OMIT);
+	private static final TokenRule STONE_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM | FAMILY_STONE)
+			.none(TOKEN_OMIT | FAMILY_SAND);
+	private static final TokenRule WORKSTATION_OR_STORAGE = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM)
+			.any(FAMILY_WORKSTATION | TOKEN_WORKSTATION_ITEM)
+			.none(TOKEN_OMIT);
+	private static final TokenRule UTILITY_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM)
+			.any(FAMILY_UTILITY | TOKEN_UTILITY_ITEM)
+			.none(TOKEN_OMIT);
+	private static final TokenRule COPPER_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM | FAMILY_COPPER | TOKEN_COPPER_BASE)
+			.none(TOKEN_OMIT | FAMILY_ORE);
+	private static final TokenRule NETHER_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM | FAMILY_NETHER)
+			.none(TOKEN_OMIT);
+	private static final TokenRule END_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM | FAMILY_END)
+			.none(TOKEN_OMIT);
+	private static final TokenRule SAND_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM | FAMILY_SAND)
+			.none(TOKEN_OMIT);
+	private static final TokenRule OVERWORLD_NATURE = TokenRule.of()
+			.none(TOKEN_OMIT | FAMILY_NETHER | FAMILY_END);
+	// Narrows tag-backed sources; the tag itself decides what the block is.
+	private static final TokenRule TAGGED_BLOCK = TokenRule.of()
+			.all(TOKEN_BLOCK_ITEM);
 
         private static final List<CategoryDefinition> DEFINITIONS = List.of(
                         CategoryDefinition.builder("structure_wood", () -> new ItemStack(Items.OAK_PLANKS))
-                                        .source(GROUP_BUILDING_BLOCKS, BlockFilterCreativeLayout::isWoodOrBambooStructure)
-                                        .source(GROUP_NATURAL_BLOCKS, BlockFilterCreativeLayout::isWoodOrBambooStructure)
-                                        .arranger(BlockFilterCreativeLayout::arrangeWoodStructures)
+                                        .source(GROUP_BUILDING_BLOCKS, WOOD_OR_BAMBOO_STRUCTURE)
+                                        .source(GROUP_NATURAL_BLOCKS, WOOD_OR_BAMBOO_STRUCTURE)
+                                        .source(GROUP_BUILDING_BLOCKS, ItemTags.LOGS, TAGGED_BLOCK)
+                                        .source(GROUP_BUILDING_BLOCKS, ItemTags.PLANKS, TAGGED_BLOCK)
+                                        .source(GROUP_NATURAL_BLOCKS, ItemTags.LOGS, TAGGED_BLOCK)
+                                        .order(BlockFilterCreativeLayout::woodStructureOrder)
                                         .build(),
                         CategoryDefinition.builder("structure_stone", () -> new ItemStack(Items.STONE))
-                                        .source(GROUP_BUILDING_BLOCKS, BlockFilterCreativeLayout::isStoneBlock)
-                                        .source(GROUP_NATURAL_BLOCKS, BlockFilterCreativeLayout::isStoneBlock)
-                                        .arranger(BlockFilterCreativeLayout::arrangeStoneBlocks)
+                                        .source(GROUP_BUILDING_BLOCKS, STONE_BLOCK)
+                                        .source(GROUP_NATURAL_BLOCKS, STONE_BLOCK)
+                                        .order(BlockFilterCreativeLayout::stoneBlockOrder)
                                         .build(),
                         CategoryDefinition.builder("structure_copper", () -> new ItemStack(Items.COPPER_BLOCK))
-                                        .source(GROUP_BUILDING_BLOCKS, BlockFilterCreativeLayout::isCopperBlock)
-                                        .source(GROUP_FUNCTIONAL_BLOCKS, BlockFilterCreativeLayout::isCopperBlock)
-                                        .arranger(BlockFilterCreativeLayout::arrangeCopperBlocks)
+                                        .source(GROUP_BUILDING_BLOCKS, COPPER_BLOCK)
+                                        .source(GROUP_FUNCTIONAL_BLOCKS, COPPER_BLOCK)
+                                        .order(BlockFilterCreativeLayout::copperBlockOrder)
                                         .build());
-
-	private static LayoutSnapshot snapshot;
+	private static final StackRouter ROUTER = new StackRouter(DEFINITIONS);
+	private static final List<Identifier> CATEGORY_IDS = DEFINITIONS.stream().map(CategoryDefinition::identifier).toList();
+	// Bump whenever a definition, rule or arranger changes so that cached layouts are rebuilt.
+	private static final int LAYOUT_VERSION = 2;
+	// Stacks routed per unit of work, by a pool task in parallel builds and by a step of a sliced build.
+	private static final int ROUTE_BATCH_SIZE = 256;
+
+	private static final AtomicReference<LayoutSnapshot> SNAPSHOT = new AtomicReference<>();
+	private static final ConcurrentMap<SnapshotKey, PendingBuild> IN_FLIGHT = new ConcurrentHashMap<>();
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+	private static final AtomicReference<PrewarmedBuild> PREWARMED = new AtomicReference<>();
+	private static final AtomicReference<SlicedBuild> SLICED = new AtomicReference<>();
 
 	private BlockFilterCreativeLayout() {
 	}
@@ -143,29 +233,346 @@ final class BlockFilterCreativeLayout {
 		return DEFINITIONS;
 	}
 
-	static synchronized List<ItemStack> stacksFor(CategoryDefinition definition, ItemGroup.DisplayContext context) {
-		if (snapshot == null || !snapshot.matches(context.enabledFeatures(), context.hasPermissions())) {
-			snapshot = LayoutSnapshot.build(context);
+	static PackedStacks stacksFor(CategoryDefinition definition, ItemGroup.DisplayContext context) {
+		return snapshotFor(context).stacks(definition.identifier());
+	}
+
+	/**
+	 * Returns where the current layout shows {@code item}, or {@code null} when no category does or nothing has been
+	 * built yet. Categories that have not been arranged yet are not searched.
+	 */
+	static BlockFilterItemGroups.ItemLocation locate(Item item) {
+		LayoutSnapshot snapshot = published();
+		int rawId = Registries.ITEM.getRawId(item);
+		if (snapshot == null || rawId < 0) {
+			return null;
+		}
+
+		ReverseIndex index = snapshot.reverseIndex();
+		int category = index.category(rawId);
+		return category == ReverseIndex.ABSENT
+				? null
+				: new BlockFilterItemGroups.ItemLocation(DEFINITIONS.get(category).identifier(), index.slot(rawId));
+	}
+
+	static void invalidate() {
+		GENERATION.incrementAndGet();
+		SNAPSHOT.set(null);
+		PREWARMED.set(null);
+		SLICED.set(null);
+		Recent.SNAPSHOTS.clear();
+	}
+
+	/**
+	 * Drops everything indexed by raw item id after registry sync remapped the item registry.
+	 */
+	static void onItemIdsRemapped() {
+		CLASSIFICATION.clear();
+		ItemPathInfo.clearCache();
+		PrecomputedLayout.resetResolvedIds();
+		ROUTER.resetTrustedRoutes();
+		ItemTagBitset.compileAll();
+		LayoutCache.forgetRegistryFingerprint();
+		DEFINITIONS.forEach(CategoryDefinition::forgetArranged);
+		invalidate();
+	}
+
+	/**
+	 * Recompiles the item tags used by source rules and drops layouts routed with the previous members.
+	 */
+	static void onTagsLoaded() {
+		if (ItemTagBitset.compileAll()) {
+			LayoutCache.forgetRegistryFingerprint();
+			invalidate();
+		}
+	}
+
+	/**
+	 * Classifies and arranges vanilla content for {@code context} from scratch and records the result in
+	 * {@code builder}. Used by the data generator.
+	 */
+	static void precompute(ItemGroup.DisplayContext context, PrecomputedLayout.Builder builder) {
+		Routing routing = ROUTER.record(context.enabledFeatures(), builder);
+		VanillaCreativeContent.capture(context, routing::route);
+
+		Map<Identifier, List<ItemStack>> routed = new LinkedHashMap<>();
+		Map<Identifier, PackedStacks> arranged = new LinkedHashMap<>();
+		for (int i = 0; i < DEFINITIONS.size(); i++) {
+			CategoryDefinition definition = DEFINITIONS.get(i);
+			List<ItemStack> collected = routing.collected(i);
+			routed.put(definition.identifier(), collected);
+			arranged.put(definition.identifier(), definition.arrange(collected));
+		}
+		builder.variant(context.enabledFeatures(), context.hasPermissions(), routed, arranged);
+	}
+
+	static PrecomputedLayout.Builder precomputedLayoutBuilder() {
+		return PrecomputedLayout.builder(LAYOUT_VERSION);
+	}
+
+	/**
+	 * Advances the pending sliced build for at most {@code budgetNanos}, always making some progress. Must be called
+	 * from the client thread.
+	 */
+	static void advanceSlicedBuild(long budgetNanos) {
+		SlicedBuild build = SLICED.get();
+		if (build == null) {
+			return;
+		}
+
+		LayoutSnapshot built = build.advance(System.nanoTime() + budgetNanos);
+		if (built == null || !SLICED.compareAndSet(build, null)) {
+			return;
+		}
+
+		if (publish(build.key, built)) {
+			VanillaCreativeContent.refreshLayoutGroups(build.key.features(), build.key.hasPermissions());
+		}
+	}
+
+	/**
+	 * Captures vanilla content for {@code context} on the calling thread, which must be the client thread, and routes
+	 * and arranges it on {@code executor}. {@link #stacksFor} picks the result up once it is ready.
+	 */
+	static void prewarm(ItemGroup.DisplayContext context, Executor executor) {
+		FeatureSet features = context.enabledFeatures();
+		boolean hasPermissions = context.hasPermissions();
+		LayoutSnapshot current = published();
+		if (current != null && current.matches(features, hasPermissions)) {
+			return;
+		}
+
+		SnapshotKey key = SnapshotKey.current(features, hasPermissions);
+		LayoutSnapshot recent = Recent.SNAPSHOTS.get(key);
+		if (recent != null) {
+			adopt(key, recent);
+			return;
+		}
+
+		LayoutSnapshot cached = LayoutSnapshot.loadCached(key);
+		if (cached != null) {
+			adopt(key, cached);
+			return;
+		}
+
+		ForkJoinPool pool = workers();
+		LayoutSnapshot derived = LayoutSnapshot.derive(current, key);
+		if (derived != null) {
+			PREWARMED.set(new PrewarmedBuild(key,
+					CompletableFuture.supplyAsync(() -> derived.arrangeAll(pool), executor)));
+			return;
+		}
+
+		List<CapturedGroup> captured = LayoutSnapshot.capture(context);
+		PREWARMED.set(new PrewarmedBuild(key, CompletableFuture.supplyAsync(
+				() -> LayoutSnapshot.route(captured, key, current, pool).arrangeAll(pool), executor)));
+	}
+
+	/**
+	 * Returns the prewarmed snapshot when it has finished and was started for {@code key}; never waits for a build
+	 * still in progress.
+	 */
+	private static LayoutSnapshot takePrewarmed(SnapshotKey key) {
+		PrewarmedBuild prewarmed = PREWARMED.get();
+		if (prewarmed == null || !prewarmed.result().isDone()) {
+			return null;
+		}
+
+		PREWARMED.compareAndSet(prewarmed, null);
+		try {
+			LayoutSnapshot snapshot = prewarmed.result().join();
+			return prewarmed.key().equals(key) ? snapshot : null;
+		} catch (CompletionException e) {
+			BlockFilter.LOGGER.warn("Background layout build failed, rebuilding on demand", e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the published snapshot when it matches {@code context}, then a recently used one for the same context;
+	 * otherwise builds one. Concurrent callers asking for the same key wait for a single build instead of starting
+	 * their own.
+	 */
+	private static LayoutSnapshot snapshotFor(ItemGroup.DisplayContext context) {
+		FeatureSet features = context.enabledFeatures();
+		boolean hasPermissions = context.hasPermissions();
+		LayoutSnapshot current = published();
+		if (current != null && current.matches(features, hasPermissions)) {
+			return current;
+		}
+
+		SnapshotKey key = SnapshotKey.current(features, hasPermissions);
+		LayoutSnapshot recent = Recent.SNAPSHOTS.get(key);
+		if (recent != null) {
+			adopt(key, recent);
+			return recent;
+		}
+
+		LayoutSnapshot prewarmed = takePrewarmed(key);
+		if (prewarmed != null) {
+			publish(key, prewarmed);
+			return prewarmed;
+		}
+
+		LayoutSnapshot cached = LayoutSnapshot.loadCached(key);
+		if (cached != null) {
+			adopt(key, cached);
+			return cached;
+		}
+
+		LayoutSnapshot derived = LayoutSnapshot.derive(current, key);
+		if (derived != null) {
+			publish(key, derived);
+			return derived;
+		}
+
+		if (BlockFilterConfig.get().slicedBuild()) {
+			return scheduleSliced(key, context, current);
+		}
+
+		PendingBuild build = new PendingBuild();
+		PendingBuild pending = IN_FLIGHT.putIfAbsent(key, build);
+		if (pending != null) {
+			return pending.result.join();
+		}
+
+		try {
+			ForkJoinPool pool = workers();
+			LayoutSnapshot built = LayoutSnapshot.build(context, key, current, pool);
+			if (pool != null) {
+				// Every category is asked for during the same update, so arrange them all at once across the pool.
+				built.arrangeAll(pool);
+			}
+			publish(key, built);
+			build.result.complete(built);
+			return built;
+		} catch (RuntimeException | Error e) {
+			build.result.completeExceptionally(e);
+			throw e;
+		} finally {
+			IN_FLIGHT.remove(key, build);
+		}
+	}
+
+	/**
+	 * Publishes a freshly built snapshot and has it written to the layout cache once every category is arranged.
+	 * Returns whether it was published, which it is not once {@code key} belongs to an earlier generation.
+	 */
+	private static boolean publish(SnapshotKey key, LayoutSnapshot built) {
+		if (!adopt(key, built)) {
+			return false;
+		}
+		built.storeWhenArranged(LayoutSnapshot.fingerprint(key.features(), key.hasPermissions()));
+		BlockFilter.LOGGER.debug("Built layout for {} (recent layouts: {} hits, {} misses)", key, Recent.SNAPSHOTS.hits(),
+				Recent.SNAPSHOTS.misses());
+		return true;
+	}
+
+	/**
+	 * Makes {@code snapshot} the current one unless {@code key} belongs to an earlier generation. An invalidation
+	 * racing with this may still leave the snapshot set, but {@link #published()} never returns it.
+	 */
+	private static boolean adopt(SnapshotKey key, LayoutSnapshot snapshot) {
+		if (GENERATION.get() != key.generation()) {
+			return false;
+		}
+		SNAPSHOT.set(snapshot);
+		Recent.SNAPSHOTS.put(key, snapshot);
+		return true;
+	}
+
+	/**
+	 * Returns the current snapshot, or {@code null} when there is none or it belongs to an earlier generation.
+	 */
+	private static LayoutSnapshot published() {
+		LayoutSnapshot snapshot = SNAPSHOT.get();
+		return snapshot != null && snapshot.key.generation() == GENERATION.get() ? snapshot : null;
+	}
+
+	/**
+	 * Starts a sliced build for {@code key} unless one is already running and returns the snapshot to serve meanwhile:
+	 * the previous one, or an empty one before the first build completes.
+	 */
+	private static LayoutSnapshot scheduleSliced(SnapshotKey key, ItemGroup.DisplayContext context,
+			LayoutSnapshot current) {
+		SlicedBuild running = SLICED.get();
+		if (running == null || !running.key.equals(key)) {
+			SLICED.set(new SlicedBuild(key, context, current));
+		}
+		return current != null ? current : LayoutSnapshot.EMPTY;
+	}
+
+	/**
+	 * Returns the pool that parallel builds run on, or {@code null} when they are disabled.
+	 */
+	private static ForkJoinPool workers() {
+		return BlockFilterConfig.get().parallelBuild() ? Workers.POOL : null;
+	}
+
+	/**
+	 * Identifies a layout: the context it was built for and the generation it belongs to, so that entries from before
+	 * an invalidation can never be returned.
+	 */
+	record SnapshotKey(FeatureSet features, boolean hasPermissions, int generation) {
+		static SnapshotKey current(FeatureSet features, boolean hasPermissions) {
+			return new SnapshotKey(features, hasPermissions, GENERATION.get());
 		}
-		return snapshot.stacks(definition.identifier());
 	}
 
-	static synchronized void invalidate() {
-		snapshot = null;
+	/**
+	 * Background arrangement started by {@link #prewarm}, stamped with the key it was routed for.
+	 */
+	private record PrewarmedBuild(SnapshotKey key, CompletableFuture<LayoutSnapshot> result) {
+	}
+
+	/**
+	 * Display stacks of one source group, copied out of vanilla's collection so they can be routed off-thread.
+	 */
+	record CapturedGroup(String groupId, List<ItemStack> stacks) {
+	}
+
+	/**
+	 * Holds the recently used snapshots. Kept out of the class initializer, which must not read the config so that
+	 * the path-level helpers can be loaded without a running game.
+	 */
+	private static final class Recent {
+		private static final LruCache<SnapshotKey, LayoutSnapshot> SNAPSHOTS =
+				new LruCache<>(BlockFilterConfig.get().snapshotCacheSize());
+	}
+
+	/**
+	 * Holds the pool used by parallel builds, created the first time one runs.
+	 */
+	private static final class Workers {
+		// Leaves a core to the client thread.
+		private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("BlockFilter Worker-" + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+	}
+
+	private static final class PendingBuild {
+		private final CompletableFuture<LayoutSnapshot> result = new CompletableFuture<>();
 	}
 
                 static final class CategoryDefinition {
 		private final Identifier identifier;
 		private final Supplier<ItemStack> iconSupplier;
 		private final List<SourceRule> sources;
-		private final UnaryOperator<List<ItemStack>> arranger;
+		private final Function<ItemPathInfo[], int[]> order;
+		private final SearchVisibility visibility;
+		private volatile ArrangedMemo memo;
 
 		private CategoryDefinition(Identifier identifier, Supplier<ItemStack> iconSupplier, List<SourceRule> sources,
-				UnaryOperator<List<ItemStack>> arranger) {
+				Function<ItemPathInfo[], int[]> order, SearchVisibility visibility) {
 			this.identifier = identifier;
 			this.iconSupplier = iconSupplier;
 			this.sources = List.copyOf(sources);
-			this.arranger = arranger;
+			this.order = order;
+			this.visibility = visibility;
 		}
 
 		Identifier identifier() {
@@ -180,25 +587,54 @@ final class BlockFilterCreativeLayout {
 			return iconSupplier.get().copy();
 		}
 
-		List<ItemStack> extract(Map<String, List<ItemStack>> sourcePools) {
-			List<ItemStack> collected = new ArrayList<>();
-			for (SourceRule rule : sources) {
-				List<ItemStack> pool = sourcePools.get(rule.groupId());
-				if (pool == null || pool.isEmpty()) {
-					continue;
-				}
+		List<SourceRule> sources() {
+			return sources;
+		}
 
-				List<ItemStack> matches = rule.extract(pool);
-				for (ItemStack stack : matches) {
-					if (shouldOmit(stack)) {
-						continue;
-					}
-					collected.add(stack);
+		/**
+		 * Returns how this category's stacks reach the search tab, falling back to the configured default.
+		 */
+		SearchVisibility visibility() {
+			return visibility != null ? visibility : BlockFilterConfig.get().searchVisibility();
+		}
+
+		/**
+		 * Arranges the routed stacks and keeps the first stack of every item, since vanilla groups may list the same
+		 * item more than once.
+		 */
+		PackedStacks arrange(List<ItemStack> collected) {
+			List<ItemStack> arranged = order == null ? collected : reorder(collected, order.apply(infosOf(collected)));
+			Set<Item> seen = new HashSet<>();
+			List<ItemStack> unique = new ArrayList<>(arranged.size());
+			for (ItemStack stack : arranged) {
+				if (seen.add(stack.getItem())) {
+					unique.add(stack);
 				}
 			}
+			return PackedStacks.of(unique);
+		}
+
+		/**
+		 * Returns the last arrangement remembered for {@code input} when it holds the same stacks in the same order,
+		 * or {@code null}. Arrangers are pure, so the stored result is what arranging again would produce.
+		 */
+		PackedStacks memoised(PackedStacks input) {
+			ArrangedMemo last = memo;
+			return last != null && last.input().sameStacks(input) ? last.arranged() : null;
+		}
+
+		void remember(PackedStacks input, PackedStacks arranged) {
+			memo = new ArrangedMemo(input, arranged);
+		}
+
+		/**
+		 * Drops the remembered arrangement, whose raw ids are stale once the item registry has been remapped.
+		 */
+		void forgetArranged() {
+			memo = null;
+		}
 
-			List<ItemStack> arranged = arranger.apply(new ArrayList<>(collected));
-			return List.copyOf(arranged);
+		private record ArrangedMemo(PackedStacks input, PackedStacks arranged) {
 		}
 
 		static Builder builder(String path, Supplier<ItemStack> iconSupplier) {
@@ -210,714 +646,949 @@ final class BlockFilterCreativeLayout {
 		}
 
 		static final class Builder {
-			private static final UnaryOperator<List<ItemStack>> IDENTITY = list -> list;
-
 			private final Identifier identifier;
 			private final Supplier<ItemStack> iconSupplier;
 			private final List<SourceRule> sources = new ArrayList<>();
-			private UnaryOperator<List<ItemStack>> arranger = IDENTITY;
+			private Function<ItemPathInfo[], int[]> order;
+			private SearchVisibility visibility;
 
 			private Builder(Identifier identifier, Supplier<ItemStack> iconSupplier) {
 				this.identifier = identifier;
 				this.iconSupplier = iconSupplier;
 			}
 
-			Builder source(String groupId, Predicate<ItemStack> predicate) {
-				sources.add(new SourceRule(groupId, predicate));
+			Builder source(String groupId, TokenRule rule) {
+				sources.add(new SourceRule(groupId, rule, null));
+				return this;
+			}
+
+			/**
+			 * Adds a source taking the items of {@code tag} that also pass {@code rule}. Tag and keyword sources can be
+			 * mixed freely; routing still follows source order.
+			 */
+			Builder source(String groupId, TagKey<Item> tag, TokenRule rule) {
+				sources.add(new SourceRule(groupId, rule, ItemTagBitset.of(tag)));
+				return this;
+			}
+
+			/**
+			 * Sets how the category orders its stacks, given their path infos in routed order.
+			 */
+			Builder order(Function<ItemPathInfo[], int[]> order) {
+				this.order = order;
 				return this;
 			}
 
-			Builder arranger(UnaryOperator<List<ItemStack>> arranger) {
-				this.arranger = arranger;
+			Builder visibility(SearchVisibility visibility) {
+				this.visibility = visibility;
 				return this;
 			}
 
 			CategoryDefinition build() {
-				return new CategoryDefinition(identifier, iconSupplier, sources, arranger);
+				return new CategoryDefinition(identifier, iconSupplier, sources, order, visibility);
 			}
 		}
 	}
 
 private static final class SourceRule {
 		private final String groupId;
-		private final Predicate<ItemStack> predicate;
+		private final TokenRule rule;
+		private final ItemTagBitset tag;
 
-		private SourceRule(String groupId, Predicate<ItemStack> predicate) {
+		private SourceRule(String groupId, TokenRule rule, ItemTagBitset tag) {
 			this.groupId = groupId;
-			this.predicate = predicate;
+			this.rule = rule;
+			this.tag = tag;
 		}
 
 		String groupId() {
 			return groupId;
 		}
 
-		List<ItemStack> extract(List<ItemStack> pool) {
-			if (pool.isEmpty()) {
-				return List.of();
-			}
+		TokenRule rule() {
+			return rule;
+		}
 
-			List<ItemStack> collected = new ArrayList<>();
-			for (int i = 0; i < pool.size(); i++) {
-				ItemStack stack = pool.get(i);
-				if (stack.isEmpty()) {
-					continue;
-				}
+		boolean usesTag() {
+			return tag != null;
+		}
 
-				if (shouldOmit(stack)) {
-					pool.set(i, ItemStack.EMPTY);
-					continue;
-				}
+		boolean test(long tokens, int rawId) {
+			return rule.test(tokens) && (tag == null || tag.contains(rawId));
+		}
+	}
 
-				if (predicate == null || predicate.test(stack)) {
-					collected.add(stack.copy());
-					pool.set(i, ItemStack.EMPTY);
+	/**
+	 * Sends every captured stack to the first category, in definition order, with a source rule for its group that
+	 * accepts it. Within a category, stacks keep the order of its sources and then of the vanilla group, exactly as if
+	 * each rule had consumed its matches from the group in turn.
+	 */
+	private static final class StackRouter {
+		private static final int[] NO_ROUTES = new int[0];
+
+		private final Map<String, int[]> routesByGroup = new HashMap<>();
+		private final Map<String, Integer> firstTagRouteByGroup = new HashMap<>();
+		private final ConcurrentMap<String, int[]> trustedRoutes = new ConcurrentHashMap<>();
+		private final SourceRule[] rules;
+		private final int[] firstRoute;
+
+		private StackRouter(List<CategoryDefinition> definitions) {
+			Map<String, List<Integer>> routes = new HashMap<>();
+			List<SourceRule> rules = new ArrayList<>();
+			this.firstRoute = new int[definitions.size() + 1];
+			for (int definition = 0; definition < definitions.size(); definition++) {
+				firstRoute[definition] = rules.size();
+				for (SourceRule source : definitions.get(definition).sources()) {
+					routes.computeIfAbsent(source.groupId(), group -> new ArrayList<>()).add(rules.size());
+					if (source.usesTag()) {
+						firstTagRouteByGroup.putIfAbsent(source.groupId(), rules.size());
+					}
+					rules.add(source);
 				}
 			}
+			firstRoute[definitions.size()] = rules.size();
+			this.rules = rules.toArray(new SourceRule[0]);
+			routes.forEach((group, indices) -> routesByGroup.put(group,
+					indices.stream().mapToInt(Integer::intValue).toArray()));
+		}
 
-			// Remove consumed stacks from the pool.
-			pool.removeIf(ItemStack::isEmpty);
-			return collected;
+		/**
+		 * Returns the precomputed routes of {@code groupId} that still hold whatever the tags contain. Tag members can
+		 * differ from those seen by the data generator, so a route is only kept when no tag rule of the group comes
+		 * before it; the others are left for classification.
+		 */
+		int[] knownRoutes(PrecomputedLayout precomputed, String groupId) {
+			int[] routes = precomputed.routes(groupId);
+			Integer firstTagRoute = firstTagRouteByGroup.get(groupId);
+			if (firstTagRoute == null) {
+				return routes;
+			}
+			return trustedRoutes.computeIfAbsent(groupId, group -> {
+				int[] trusted = routes.clone();
+				for (int i = 0; i < trusted.length; i++) {
+					if (trusted[i] == PrecomputedLayout.NO_ROUTE || trusted[i] >= firstTagRoute) {
+						trusted[i] = PrecomputedLayout.UNKNOWN_ROUTE;
+					}
+				}
+				return trusted;
+			});
+		}
+
+		void resetTrustedRoutes() {
+			trustedRoutes.clear();
+		}
+
+		Routing start(FeatureSet features) {
+			return new Routing(this, features, PrecomputedLayout.get(LAYOUT_VERSION), null);
+		}
+
+		/**
+		 * Starts routing that classifies every item and reports each route to {@code recorder}.
+		 */
+		Routing record(FeatureSet features, PrecomputedLayout.Builder recorder) {
+			return new Routing(this, features, null, recorder);
 		}
 	}
 
-	private static final class LayoutSnapshot {
+	/**
+	 * Stacks routed so far for one display context, bucketed by route. Buckets hold vanilla's own stack instances,
+	 * which are never modified; snapshots pack them into {@link PackedStacks}, which hands out fresh stacks.
+	 */
+	private static final class Routing {
+
+		private final StackRouter router;
 		private final FeatureSet features;
-		private final boolean hasPermissions;
-		private final Map<Identifier, List<ItemStack>> stacksByCategory;
+		private final PrecomputedLayout precomputed;
+		private final PrecomputedLayout.Builder recorder;
+		private final List<List<ItemStack>> buckets;
 
-		private LayoutSnapshot(FeatureSet features, boolean hasPermissions, Map<Identifier, List<ItemStack>> stacksByCategory) {
+		private Routing(StackRouter router, FeatureSet features, PrecomputedLayout precomputed,
+				PrecomputedLayout.Builder recorder) {
+			this.router = router;
 			this.features = features;
-			this.hasPermissions = hasPermissions;
-			this.stacksByCategory = stacksByCategory;
+			this.precomputed = precomputed;
+			this.recorder = recorder;
+			this.buckets = new ArrayList<>(router.rules.length);
+			for (int i = 0; i < router.rules.length; i++) {
+				buckets.add(new ArrayList<>());
+			}
 		}
 
-		static LayoutSnapshot build(ItemGroup.DisplayContext context) {
-			Map<String, List<ItemStack>> pools = VanillaCreativeContent.capture(context);
-			Map<Identifier, List<ItemStack>> byCategory = new LinkedHashMap<>();
+		void route(String groupId, Iterable<ItemStack> stacks) {
+			int[] routes = router.routesByGroup.getOrDefault(groupId, StackRouter.NO_ROUTES);
+			if (routes.length == 0) {
+				return;
+			}
 
-			for (CategoryDefinition definition : DEFINITIONS) {
-				List<ItemStack> extracted = definition.extract(pools);
-				byCategory.put(definition.identifier(), List.copyOf(extracted));
+			int[] known = precomputed != null ? router.knownRoutes(precomputed, groupId) : null;
+			for (ItemStack stack : stacks) {
+				int route = routeOf(groupId, routes, known, stack);
+				if (route != PrecomputedLayout.NO_ROUTE) {
+					buckets.get(route).add(stack);
+				}
 			}
+		}
 
-                        return new LayoutSnapshot(context.enabledFeatures(), context.hasPermissions(), Collections.unmodifiableMap(byCategory));
-                }
+		/**
+		 * Routes the captured groups like {@link #route}, classifying their stacks in chunks of
+		 * {@value BlockFilterCreativeLayout#ROUTE_BATCH_SIZE} on {@code pool}. Buckets are filled afterwards in capture order, so the result is identical to routing
+		 * sequentially. Must not be used while recording routes.
+		 */
+		void routeAll(List<CapturedGroup> groups, ForkJoinPool pool) {
+			List<ForkJoinTask<int[]>> chunks = new ArrayList<>();
+			for (CapturedGroup group : groups) {
+				int[] routes = router.routesByGroup.getOrDefault(group.groupId(), StackRouter.NO_ROUTES);
+				if (routes.length == 0) {
+					continue;
+				}
+				int[] known = precomputed != null ? router.knownRoutes(precomputed, group.groupId()) : null;
+				for (int from = 0; from < group.stacks().size(); from += ROUTE_BATCH_SIZE) {
+					List<ItemStack> chunk =
+							group.stacks().subList(from, Math.min(from + ROUTE_BATCH_SIZE, group.stacks().size()));
+					chunks.add(pool.submit(() -> {
+						int[] chunkRoutes = new int[chunk.size()];
+						for (int i = 0; i < chunkRoutes.length; i++) {
+							chunkRoutes[i] = routeOf(group.groupId(), routes, known, chunk.get(i));
+						}
+						return chunkRoutes;
+					}));
+				}
+			}
 
-		boolean matches(FeatureSet currentFeatures, boolean currentPermissions) {
-			return hasPermissions == currentPermissions && features.equals(currentFeatures);
+			int chunk = 0;
+			for (CapturedGroup group : groups) {
+				if (!router.routesByGroup.containsKey(group.groupId())) {
+					continue;
+				}
+				for (int from = 0; from < group.stacks().size(); from += ROUTE_BATCH_SIZE) {
+					int[] chunkRoutes = chunks.get(chunk++).join();
+					for (int i = 0; i < chunkRoutes.length; i++) {
+						if (chunkRoutes[i] != PrecomputedLayout.NO_ROUTE) {
+							buckets.get(chunkRoutes[i]).add(group.stacks().get(from + i));
+						}
+					}
+				}
+			}
 		}
 
-		List<ItemStack> stacks(Identifier categoryId) {
-			return stacksByCategory.getOrDefault(categoryId, List.of());
-		}
-	}
+		/**
+		 * Returns the route of {@code stack} within its group, or {@link PrecomputedLayout#NO_ROUTE}.
+		 */
+		private int routeOf(String groupId, int[] routes, int[] known, ItemStack stack) {
+			Item item = stack.getItem();
+			if (stack.isEmpty() || !item.isEnabled(features)) {
+				return PrecomputedLayout.NO_ROUTE;
+			}
 
-		static boolean shouldOmit(ItemStack stack) {
-		if (stack.isEmpty()) {
-			return true;
+			int rawId = Registries.ITEM.getRawId(item);
+			int route = PrecomputedLayout.UNKNOWN_ROUTE;
+			if (known != null && rawId >= 0 && rawId < known.length) {
+				route = known[rawId];
+			}
+			if (route == PrecomputedLayout.UNKNOWN_ROUTE || route >= router.rules.length) {
+				route = classify(routes, tokensOf(stack), rawId);
+				if (recorder != null) {
+					recorder.route(groupId, item, route);
+				}
+			}
+			return route;
 		}
 
-		Item item = stack.getItem();
-		String path = pathOf(item);
-		if (path.isEmpty()) {
-			return false;
+		private int classify(int[] routes, long tokens, int rawId) {
+			if ((tokens & TOKEN_OMIT) != 0) {
+				return PrecomputedLayout.NO_ROUTE;
+			}
+			for (int route : routes) {
+				if (router.rules[route].test(tokens, rawId)) {
+					return route;
+				}
+			}
+			return PrecomputedLayout.NO_ROUTE;
 		}
 
-		if (path.contains("copper")) {
-			return false;
-		}
+		/**
+		 * Returns the stacks routed to the category at {@code definition}, in source order.
+		 */
+		List<ItemStack> collected(int definition) {
+			int from = router.firstRoute[definition];
+			int to = router.firstRoute[definition + 1];
+			if (to - from == 1) {
+				return buckets.get(from);
+			}
 
-		if (containsAny(path, FOOD_KEYWORDS)) {
-			return true;
+			List<ItemStack> collected = new ArrayList<>();
+			for (int route = from; route < to; route++) {
+				collected.addAll(buckets.get(route));
+			}
+			return collected;
 		}
+	}
 
-		if (containsAny(path, "spawn_egg")) {
-			return true;
+	/**
+	 * Resumable snapshot build that captures one source group, routes one batch of its stacks or arranges one category
+	 * per step, so that a large registry can be processed over several client ticks.
+	 */
+	private static final class SlicedBuild {
+		private final SnapshotKey key;
+		private final ItemGroup.DisplayContext context;
+		private final LayoutSnapshot previous;
+		private final List<ItemGroup> groups;
+		private final Routing routing;
+		private final PrecomputedLayout.Variant precomputed;
+		private final Map<Identifier, CategoryStacks> byCategory = new LinkedHashMap<>();
+		private Stage stage = Stage.CAPTURE;
+		private int cursor;
+		private String groupId;
+		private List<ItemStack> groupStacks = List.of();
+		private int offset;
+
+		private SlicedBuild(SnapshotKey key, ItemGroup.DisplayContext context, LayoutSnapshot previous) {
+			this.key = key;
+			this.context = context;
+			this.previous = previous;
+			this.groups = VanillaCreativeContent.sourceGroups();
+			this.routing = ROUTER.start(key.features());
+			this.precomputed = precomputedVariant(key.features(), key.hasPermissions());
 		}
 
-		if (containsAny(path, COMBAT_KEYWORDS)) {
-			return true;
+		/**
+		 * Runs steps until {@code deadline} passes and returns the snapshot once the build is complete.
+		 */
+		LayoutSnapshot advance(long deadline) {
+			do {
+				switch (stage) {
+					case CAPTURE -> capture();
+					case ROUTE -> route();
+					case ARRANGE -> arrange();
+					case PUBLISH -> {
+						stage = Stage.DONE;
+						return new LayoutSnapshot(key, Collections.unmodifiableMap(byCategory));
+					}
+					case DONE -> {
+						return null;
+					}
+				}
+			} while (System.nanoTime() < deadline);
+			return null;
 		}
 
-		if (containsAny(path, POTION_KEYWORDS)) {
-			return true;
-		}
+		private void capture() {
+			if (cursor == groups.size()) {
+				groupStacks = List.of();
+				stage = Stage.ARRANGE;
+				cursor = 0;
+				return;
+			}
 
-		if (containsAny(path, BOOK_KEYWORDS)) {
-			return true;
+			ItemGroup group = groups.get(cursor++);
+			groupId = Registries.ITEM_GROUP.getId(group).toString();
+			groupStacks = VanillaCreativeContent.captureGroupDetached(group, context);
+			offset = 0;
+			stage = Stage.ROUTE;
 		}
 
-		if (containsAny(path, PATTERN_KEYWORDS)) {
-			return true;
+		private void route() {
+			int end = Math.min(offset + ROUTE_BATCH_SIZE, groupStacks.size());
+			routing.route(groupId, groupStacks.subList(offset, end));
+			offset = end;
+			if (offset == groupStacks.size()) {
+				stage = Stage.CAPTURE;
+			}
 		}
 
-		if (containsAny(path, HARNESS_KEYWORDS)) {
-			return true;
-		}
+		private void arrange() {
+			if (cursor == DEFINITIONS.size()) {
+				stage = Stage.PUBLISH;
+				return;
+			}
 
-		if (containsAny(path, MATERIAL_KEYWORDS)) {
-			return true;
+			CategoryDefinition definition = DEFINITIONS.get(cursor);
+			List<ItemStack> collected = routing.collected(cursor);
+			PackedStacks input = PackedStacks.of(collected);
+			CategoryStacks reusable = previous != null ? previous.reusable(definition.identifier(), input) : null;
+			byCategory.put(definition.identifier(), reusable != null ? reusable
+					: CategoryStacks.arranged(input,
+							BlockFilterCreativeLayout.arrange(definition, collected, input, precomputed)));
+			cursor++;
 		}
 
-		return false;
+		private enum Stage {
+			CAPTURE,
+			ROUTE,
+			ARRANGE,
+			PUBLISH,
+			DONE
+		}
 	}
 
-	// === filters ====================================================================================================
+	static final class LayoutSnapshot {
+		private static final LayoutSnapshot EMPTY =
+				new LayoutSnapshot(new SnapshotKey(FeatureSet.empty(), false, -1), Map.of());
 
-        private static boolean isWoodOrBambooStructure(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                String path = pathOf(item);
-                if (detectWoodBase(path).isEmpty()) {
-                        return false;
-                }
-
-                if (item instanceof net.minecraft.item.BlockItem) {
-                        return true;
-                }
-
-                return !detectWoodShape(path).isEmpty();
-        }
+		private final SnapshotKey key;
+		private final Map<Identifier, CategoryStacks> stacksByCategory;
+		private final AtomicReference<Long> unstoredFingerprint = new AtomicReference<>();
+		private volatile ReverseIndex reverseIndex;
 
-        private static boolean isStoneBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-		Item item = stack.getItem();
-		if (!(item instanceof net.minecraft.item.BlockItem)) {
-			return false;
+		private LayoutSnapshot(SnapshotKey key, Map<Identifier, CategoryStacks> stacksByCategory) {
+			this.key = key;
+			this.stacksByCategory = stacksByCategory;
 		}
 
-                String path = pathOf(item);
-                return containsAny(path, "stone", "brick", "deepslate", "granite", "andesite", "diorite", "blackstone", "basalt",
-                                "calcite", "tuff", "slate", "marble", "tile", "pillar", "cobblestone", "mud_brick", "resin", "prismarine",
-                                "quartz") && !containsAny(path, SAND_KEYWORDS);
-        }
+		/**
+		 * Builds the snapshot for {@code context}, deriving it from {@code previous} when possible and otherwise reusing
+		 * the categories of {@code previous} whose routed stacks did not change. Routes across {@code pool} unless it
+		 * is {@code null}.
+		 */
+		static LayoutSnapshot build(ItemGroup.DisplayContext context, SnapshotKey key, LayoutSnapshot previous,
+				ForkJoinPool pool) {
+			LayoutSnapshot derived = derive(previous, key);
+			if (derived != null) {
+				return derived;
+			}
+			if (pool != null) {
+				return route(capture(context), key, previous, pool);
+			}
 
-        private static boolean isWorkstationOrStorage(ItemStack stack) {
-		if (shouldOmit(stack)) {
-			return false;
+			Routing routing = ROUTER.start(key.features());
+			VanillaCreativeContent.capture(context, routing::route);
+			return assemble(key, routing, previous);
 		}
-		Item item = stack.getItem();
-		if (!(item instanceof net.minecraft.item.BlockItem)) {
-			return false;
+
+		/**
+		 * Copies the display stacks of every source group for {@code context} so that they can be routed on another
+		 * thread. Must be called from the client thread.
+		 */
+		static List<CapturedGroup> capture(ItemGroup.DisplayContext context) {
+			List<CapturedGroup> captured = new ArrayList<>();
+			VanillaCreativeContent.capture(context,
+					(groupId, stacks) -> captured.add(new CapturedGroup(groupId, new ArrayList<>(stacks))));
+			return captured;
 		}
 
-		String path = pathOf(item);
-		return containsAny(path, "table", "furnace", "anvil", "stonecutter", "grindstone", "cartography", "smithing",
-				"loom", "campfire", "smoker", "blast_furnace", "composter", "hopper", "dropper", "dispenser", "target",
-				"chest", "barrel", "shulker_box", "jukebox", "note_block", "lectern", "bell", "armor_stand", "banner_pattern")
-				|| item == Items.BREWING_STAND || item == Items.ENCHANTING_TABLE || item == Items.CAULDRON
-				|| item == Items.ENDER_CHEST;
-	}
+		/**
+		 * Routes captured source groups, across {@code pool} unless it is {@code null}, and wraps the result into a
+		 * snapshot like {@link #assemble}. Safe to call from any thread.
+		 */
+		static LayoutSnapshot route(List<CapturedGroup> captured, SnapshotKey key, LayoutSnapshot previous,
+				ForkJoinPool pool) {
+			Routing routing = ROUTER.start(key.features());
+			if (pool != null) {
+				routing.routeAll(captured, pool);
+			} else {
+				captured.forEach(group -> routing.route(group.groupId(), group.stacks()));
+			}
+			return assemble(key, routing, previous);
+		}
 
-        private static boolean isUtilityBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                if (!(item instanceof net.minecraft.item.BlockItem)) {
-                        return false;
-                }
+		/**
+		 * Derives the snapshot for {@code features} from {@code previous} without capturing anything when flags were only
+		 * removed. Source groups gate content by item, so each category's routed stacks are the previous ones minus the
+		 * items that are now disabled, and only the categories that lost an item are arranged again. Returns
+		 * {@code null} when {@code previous} does not allow this.
+		 */
+		static LayoutSnapshot derive(LayoutSnapshot previous, SnapshotKey key) {
+			FeatureSet features = key.features();
+			if (previous == null || previous.key.hasPermissions() != key.hasPermissions()
+					|| !features.isSubsetOf(previous.key.features())) {
+				return null;
+			}
 
-                String path = pathOf(item);
-                return containsAny(path, "scaffolding", "ladder", "rail", "path", "door_mat", "bell", "waystone", "sign",
-                                "hanging_sign", "crate") || item == Items.BEACON;
-        }
+			Map<Identifier, CategoryStacks> byCategory = new LinkedHashMap<>();
+			PrecomputedLayout.Variant precomputed = precomputedVariant(features, key.hasPermissions());
+			for (CategoryDefinition definition : DEFINITIONS) {
+				CategoryStacks category = previous.stacksByCategory.get(definition.identifier());
+				if (category == null || category.input == null) {
+					return null;
+				}
 
-        private static boolean isCopperBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                if (!(item instanceof net.minecraft.item.BlockItem)) {
-                        return false;
-                }
-
-                String path = pathOf(item);
-                if (!path.contains("copper") || path.contains("ore")) {
-                        return false;
-                }
-
-                return !detectCopperBase(path).isEmpty();
-        }
+				PackedStacks input = category.input.filter(item -> item.isEnabled(features));
+				byCategory.put(definition.identifier(),
+						input == category.input ? category : CategoryStacks.derived(definition, input, precomputed));
+			}
+			return new LayoutSnapshot(key, Collections.unmodifiableMap(byCategory));
+		}
 
-        private static boolean isNetherBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                if (!(item instanceof net.minecraft.item.BlockItem)) {
-                        return false;
-                }
-
-                String path = pathOf(item);
-                return containsAny(path, NETHER_KEYWORDS);
-        }
+		/**
+		 * Returns the layout cached on disk for this registry and context, or {@code null} when there is none. Nothing is
+		 * classified or arranged on a hit.
+		 */
+		static LayoutSnapshot loadCached(SnapshotKey key) {
+			Map<Identifier, PackedStacks> cached =
+					LayoutCache.load(fingerprint(key.features(), key.hasPermissions()), CATEGORY_IDS);
+			if (cached == null) {
+				return null;
+			}
 
-        private static boolean isEndBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                if (!(item instanceof net.minecraft.item.BlockItem)) {
-                        return false;
-                }
-
-                String path = pathOf(item);
-                return containsAny(path, END_KEYWORDS);
-        }
+			Map<Identifier, CategoryStacks> byCategory = new LinkedHashMap<>();
+			cached.forEach((categoryId, stacks) -> byCategory.put(categoryId, CategoryStacks.arranged(stacks)));
+			return new LayoutSnapshot(key, Collections.unmodifiableMap(byCategory));
+		}
 
-        private static boolean isSandBlock(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                if (!(item instanceof net.minecraft.item.BlockItem)) {
-                        return false;
-                }
-
-                String path = pathOf(item);
-                return containsAny(path, SAND_KEYWORDS);
-        }
+		static long fingerprint(FeatureSet features, boolean hasPermissions) {
+			return LayoutCache.fingerprint(features, hasPermissions, LAYOUT_VERSION, CATEGORY_IDS);
+		}
 
-        private static boolean isOverworldNature(ItemStack stack) {
-                if (shouldOmit(stack)) {
-                        return false;
-                }
-                Item item = stack.getItem();
-                String path = pathOf(item);
-                return !containsAny(path, NETHER_KEYWORDS) && !containsAny(path, END_KEYWORDS);
-        }
+		/**
+		 * Wraps routed stacks into a snapshot; each category is arranged the first time it is asked for, unless
+		 * {@code previous} already holds it for the same routed stacks.
+		 */
+		static LayoutSnapshot assemble(SnapshotKey key, Routing routing, LayoutSnapshot previous) {
+			Map<Identifier, CategoryStacks> byCategory = new LinkedHashMap<>();
+			PrecomputedLayout.Variant precomputed = precomputedVariant(key.features(), key.hasPermissions());
+
+			for (int i = 0; i < DEFINITIONS.size(); i++) {
+				CategoryDefinition definition = DEFINITIONS.get(i);
+				List<ItemStack> collected = routing.collected(i);
+				PackedStacks input = PackedStacks.of(collected);
+				CategoryStacks reusable = previous != null ? previous.reusable(definition.identifier(), input) : null;
+				byCategory.put(definition.identifier(), reusable != null ? reusable
+						: CategoryStacks.routed(definition, collected, input, precomputed));
+			}
 
-        private static String pathOf(Item item) {
-                Identifier id = Registries.ITEM.getId(item);
-                return id == null ? "" : id.getPath().toLowerCase(Locale.ROOT);
-        }
+			return new LayoutSnapshot(key, Collections.unmodifiableMap(byCategory));
+		}
 
-        private static List<ItemStack> arrangeWoodStructures(List<ItemStack> stacks) {
-                Map<String, Map<String, Map<String, List<ItemStack>>>> byShape = new LinkedHashMap<>();
-                Map<String, List<ItemStack>> byBaseFallback = new LinkedHashMap<>();
-                List<ItemStack> noBase = new ArrayList<>();
-
-                for (ItemStack stack : stacks) {
-                        String path = pathOf(stack.getItem());
-                        String base = detectWoodBase(path);
-                        if (base.isEmpty()) {
-                                noBase.add(stack);
-                                continue;
-                        }
-
-                        String shape = detectWoodShape(path);
-                        if (shape.isEmpty()) {
-                                byBaseFallback.computeIfAbsent(base, ignored -> new ArrayList<>()).add(stack);
-                                continue;
-                        }
-
-                        String variant = detectVariantPrefix(path);
-
-                        byShape.computeIfAbsent(shape, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(variant, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(base, ignored -> new ArrayList<>()).add(stack);
-                }
-
-                List<ItemStack> arranged = new ArrayList<>();
-
-                for (String shape : WOOD_SHAPE_ORDER) {
-                        Map<String, Map<String, List<ItemStack>>> variantBuckets = byShape.remove(shape);
-                        if (variantBuckets == null || variantBuckets.isEmpty()) {
-                                continue;
-                        }
-                        appendVariantBuckets(arranged, variantBuckets, WOOD_BASES);
-                }
-
-                for (Map<String, Map<String, List<ItemStack>>> remaining : byShape.values()) {
-                        appendVariantBuckets(arranged, remaining, WOOD_BASES);
-                }
-
-                appendBaseBuckets(arranged, byBaseFallback, WOOD_BASES);
-
-                noBase.sort(Comparator.comparing(stack -> pathOf(stack.getItem())));
-                arranged.addAll(noBase);
-                return arranged;
-        }
+		boolean matches(FeatureSet currentFeatures, boolean currentPermissions) {
+			return key.hasPermissions() == currentPermissions && key.features().equals(currentFeatures);
+		}
 
-        private static List<ItemStack> arrangeStoneBlocks(List<ItemStack> stacks) {
-                Map<String, Map<String, Map<String, List<ItemStack>>>> byShape = new LinkedHashMap<>();
-                List<ItemStack> noBase = new ArrayList<>();
-
-                for (ItemStack stack : stacks) {
-                        String path = pathOf(stack.getItem());
-                        String base = detectStoneBase(path);
-                        if (base.isEmpty()) {
-                                noBase.add(stack);
-                                continue;
-                        }
-
-                        String shape = detectStoneShape(path);
-                        String variant = detectVariantPrefix(path);
-
-                        byShape.computeIfAbsent(shape, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(variant, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(base, ignored -> new ArrayList<>()).add(stack);
-                }
-
-                List<ItemStack> arranged = new ArrayList<>();
-
-                for (String shape : STONE_SHAPE_ORDER) {
-                        Map<String, Map<String, List<ItemStack>>> variantBuckets = byShape.remove(shape);
-                        if (variantBuckets == null || variantBuckets.isEmpty()) {
-                                continue;
-                        }
-                        appendVariantBuckets(arranged, variantBuckets, STONE_BASES);
-                }
-
-                for (Map<String, Map<String, List<ItemStack>>> remaining : byShape.values()) {
-                        appendVariantBuckets(arranged, remaining, STONE_BASES);
-                }
-
-                noBase.sort(Comparator.comparing(stack -> pathOf(stack.getItem())));
-                arranged.addAll(noBase);
-                return arranged;
-        }
+		PackedStacks stacks(Identifier categoryId) {
+			CategoryStacks category = stacksByCategory.get(categoryId);
+			if (category == null) {
+				return PackedStacks.EMPTY;
+			}
 
-        private static List<ItemStack> arrangeCopperBlocks(List<ItemStack> stacks) {
-                Map<String, Map<String, Map<String, List<ItemStack>>>> byShape = new LinkedHashMap<>();
-                List<ItemStack> noBase = new ArrayList<>();
-
-                for (ItemStack stack : stacks) {
-                        String path = pathOf(stack.getItem());
-                        String base = detectCopperBase(path);
-                        if (base.isEmpty()) {
-                                noBase.add(stack);
-                                continue;
-                        }
-
-                        String shape = detectCopperShape(path);
-                        String variant = detectCopperVariant(path);
-
-                        byShape.computeIfAbsent(shape, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(variant, ignored -> new LinkedHashMap<>())
-                                        .computeIfAbsent(base, ignored -> new ArrayList<>()).add(stack);
-                }
-
-                List<ItemStack> arranged = new ArrayList<>();
-
-                for (String shape : COPPER_SHAPE_ORDER) {
-                        Map<String, Map<String, List<ItemStack>>> variantBuckets = byShape.remove(shape);
-                        if (variantBuckets == null || variantBuckets.isEmpty()) {
-                                continue;
-                        }
-                        appendCopperVariantBuckets(arranged, variantBuckets);
-                }
-
-                for (Map<String, Map<String, List<ItemStack>>> remaining : byShape.values()) {
-                        appendCopperVariantBuckets(arranged, remaining);
-                }
-
-                noBase.sort(Comparator.comparing(stack -> pathOf(stack.getItem())));
-                arranged.addAll(noBase);
-                return arranged;
-        }
+			PackedStacks arranged = category.arranged();
+			storeIfArranged();
+			return arranged;
+		}
 
-        private static void appendCopperVariantBuckets(List<ItemStack> arranged,
-                        Map<String, Map<String, List<ItemStack>>> variantBuckets) {
-                if (variantBuckets == null || variantBuckets.isEmpty()) {
-                        return;
-                }
-
-                Map<String, Map<String, List<ItemStack>>> workingBuckets = new LinkedHashMap<>(variantBuckets);
-
-                for (String variant : COPPER_VARIANT_ORDER) {
-                        Map<String, List<ItemStack>> baseBuckets = workingBuckets.remove(variant);
-                        if (baseBuckets == null || baseBuckets.isEmpty()) {
-                                continue;
-                        }
-                        appendBaseBuckets(arranged, new LinkedHashMap<>(baseBuckets), COPPER_BASES);
-                }
-
-                List<Map.Entry<String, Map<String, List<ItemStack>>>> leftovers = new ArrayList<>(workingBuckets.entrySet());
-                leftovers.sort(Map.Entry.comparingByKey());
-                for (Map.Entry<String, Map<String, List<ItemStack>>> entry : leftovers) {
-                        Map<String, List<ItemStack>> baseBuckets = entry.getValue();
-                        if (baseBuckets == null || baseBuckets.isEmpty()) {
-                                continue;
-                        }
-                        appendBaseBuckets(arranged, new LinkedHashMap<>(baseBuckets), COPPER_BASES);
-                }
-        }
+		/**
+		 * Returns the stacks of a category that has already been arranged, or {@code null} when it has not.
+		 */
+		PackedStacks arrangedStacks(Identifier categoryId) {
+			CategoryStacks category = stacksByCategory.get(categoryId);
+			return category == null ? PackedStacks.EMPTY : category.arranged;
+		}
 
-        private static void appendVariantBuckets(List<ItemStack> arranged,
-                        Map<String, Map<String, List<ItemStack>>> variantBuckets, List<String> baseOrder) {
-                Map<String, List<ItemStack>> baseBuckets = variantBuckets.remove("");
-                if (baseBuckets != null && !baseBuckets.isEmpty()) {
-                        appendBaseBuckets(arranged, baseBuckets, baseOrder);
-                }
-
-                List<Map.Entry<String, Map<String, List<ItemStack>>>> leftovers = new ArrayList<>(variantBuckets.entrySet());
-                leftovers.sort(Map.Entry.comparingByKey());
-                for (Map.Entry<String, Map<String, List<ItemStack>>> entry : leftovers) {
-                        Map<String, List<ItemStack>> buckets = entry.getValue();
-                        if (buckets == null || buckets.isEmpty()) {
-                                continue;
-                        }
-                        appendBaseBuckets(arranged, buckets, baseOrder);
-                }
-        }
+		/**
+		 * Returns where every item sits in the categories arranged so far. The index is kept once it covers every
+		 * category and rebuilt on each call until then, so it never arranges a category itself.
+		 */
+		ReverseIndex reverseIndex() {
+			ReverseIndex index = reverseIndex;
+			if (index == null) {
+				index = ReverseIndex.of(this);
+				if (index.isComplete()) {
+					reverseIndex = index;
+				}
+			}
+			return index;
+		}
 
-        private static void appendBaseBuckets(List<ItemStack> arranged, Map<String, List<ItemStack>> baseBuckets,
-                        List<String> preferredOrder) {
-                for (String base : preferredOrder) {
-                        List<ItemStack> bucket = baseBuckets.remove(base);
-                        if (bucket == null || bucket.isEmpty()) {
-                                continue;
-                        }
-                        sortByPath(bucket);
-                        arranged.addAll(bucket);
-                }
-
-                List<Map.Entry<String, List<ItemStack>>> leftovers = new ArrayList<>(baseBuckets.entrySet());
-                leftovers.sort(Map.Entry.comparingByKey());
-                for (Map.Entry<String, List<ItemStack>> entry : leftovers) {
-                        List<ItemStack> bucket = entry.getValue();
-                        if (bucket == null || bucket.isEmpty()) {
-                                continue;
-                        }
-                        sortByPath(bucket);
-                        arranged.addAll(bucket);
-                }
-        }
+		/**
+		 * Writes this snapshot to the layout cache under {@code fingerprint} as soon as every category is arranged,
+		 * which may be right away. Storing never arranges a category by itself.
+		 */
+		void storeWhenArranged(long fingerprint) {
+			unstoredFingerprint.set(fingerprint);
+			storeIfArranged();
+		}
 
-        private static void sortByPath(List<ItemStack> bucket) {
-                bucket.sort(Comparator.comparing(stack -> pathOf(stack.getItem())));
-        }
+		private void storeIfArranged() {
+			Long fingerprint = unstoredFingerprint.get();
+			if (fingerprint == null) {
+				return;
+			}
+			for (CategoryStacks category : stacksByCategory.values()) {
+				if (category.arranged == null) {
+					return;
+				}
+			}
+			if (unstoredFingerprint.compareAndSet(fingerprint, null)) {
+				LayoutCache.store(fingerprint, this::arrangedCategories);
+			}
+		}
 
-        private static List<ItemStack> arrangeVariants(List<ItemStack> stacks) {
-                List<ItemStack> arranged = new ArrayList<>(stacks);
-                arranged.sort(Comparator
-                                .comparing((ItemStack stack) -> familyKey(pathOf(stack.getItem())))
-                                .thenComparing(stack -> shapeKey(pathOf(stack.getItem())))
-                                .thenComparing(stack -> normalizedVariantKey(pathOf(stack.getItem())))
-                                .thenComparing(stack -> pathOf(stack.getItem())));
-                return arranged;
-        }
+		/**
+		 * Returns this snapshot's category when it was arranged from the same routed stacks as {@code input}, since
+		 * arrangers depend on nothing else.
+		 */
+		CategoryStacks reusable(Identifier categoryId, PackedStacks input) {
+			CategoryStacks category = stacksByCategory.get(categoryId);
+			return category != null && category.input != null && category.input.sameStacks(input) ? category : null;
+		}
 
-        private static String detectWoodBase(String path) {
-		String best = "";
-		int bestLength = -1;
-		for (String base : WOOD_BASES) {
-			if (matchesSegment(path, base) && base.length() > bestLength) {
-				best = base;
-				bestLength = base.length();
+		/**
+		 * Returns every category's arranged stacks in definition order, arranging any that are not yet.
+		 */
+		Map<Identifier, PackedStacks> arrangedCategories() {
+			Map<Identifier, PackedStacks> arranged = new LinkedHashMap<>();
+			stacksByCategory.forEach((categoryId, category) -> arranged.put(categoryId, category.arranged()));
+			return arranged;
+		}
+
+		/**
+		 * Arranges every category up front and returns this snapshot. Each category is arranged as its own task on
+		 * {@code pool} unless it is {@code null}.
+		 */
+		LayoutSnapshot arrangeAll(ForkJoinPool pool) {
+			if (pool == null) {
+				for (CategoryStacks category : stacksByCategory.values()) {
+					category.arranged();
+				}
+			} else {
+				List<ForkJoinTask<PackedStacks>> tasks = new ArrayList<>();
+				for (CategoryStacks category : stacksByCategory.values()) {
+					tasks.add(pool.submit(() -> category.arranged()));
+				}
+				tasks.forEach(ForkJoinTask::join);
 			}
+			storeIfArranged();
+			return this;
 		}
-		return best;
 	}
 
-        private static String detectWoodShape(String path) {
-                for (String shape : WOOD_SHAPE_ORDER) {
-                        if (matchesSegment(path, shape)) {
-                                return shape;
-                        }
-                }
-                return "";
-        }
+	/**
+	 * Category and slot of every item in one snapshot, indexed by raw item id. An item listed by several categories
+	 * resolves to the first one in definition order, and to its first slot there.
+	 */
+	private static final class ReverseIndex {
+		static final int ABSENT = -1;
+
+		private final int[] categories;
+		private final int[] slots;
+		private final boolean complete;
+
+		private ReverseIndex(int[] categories, int[] slots, boolean complete) {
+			this.categories = categories;
+			this.slots = slots;
+			this.complete = complete;
+		}
 
-        private static String detectStoneBase(String path) {
-                if (path.isEmpty()) {
-                        return "";
-                }
-
-                String normalized = normalizedVariantKey(path);
-                String baseCandidate = normalized;
-                for (String suffix : COMMON_SHAPE_SUFFIXES) {
-                        if (baseCandidate.endsWith("_" + suffix)) {
-                                baseCandidate = baseCandidate.substring(0, baseCandidate.length() - suffix.length() - 1);
-                                break;
-                        }
-                }
-
-                String best = "";
-                int bestLength = -1;
-                List<String> candidates = List.of(path, normalized, baseCandidate);
-                for (String candidate : candidates) {
-                        if (candidate.isEmpty()) {
-                                continue;
-                        }
-                        for (String base : STONE_BASES) {
-                                if (matchesSegment(candidate, base) && base.length() > bestLength) {
-                                        best = base;
-                                        bestLength = base.length();
-                                }
-                        }
-                }
-
-                if (!best.isEmpty()) {
-                        return best;
-                }
-                if (!baseCandidate.isEmpty()) {
-                        return baseCandidate;
-                }
-                return normalized;
-        }
+		/**
+		 * Indexes the categories of {@code snapshot} that are already arranged.
+		 */
+		static ReverseIndex of(LayoutSnapshot snapshot) {
+			int itemCount = Registries.ITEM.size();
+			int[] categories = new int[itemCount];
+			int[] slots = new int[itemCount];
+			boolean complete = true;
+			Arrays.fill(categories, ABSENT);
+			for (int category = 0; category < DEFINITIONS.size(); category++) {
+				PackedStacks stacks = snapshot.arrangedStacks(DEFINITIONS.get(category).identifier());
+				if (stacks == null) {
+					complete = false;
+					continue;
+				}
+				for (int slot = 0; slot < stacks.size(); slot++) {
+					int rawId = stacks.itemRawId(slot);
+					if (rawId >= 0 && rawId < itemCount && categories[rawId] == ABSENT) {
+						categories[rawId] = category;
+						slots[rawId] = slot;
+					}
+				}
+			}
+			return new ReverseIndex(categories, slots, complete);
+		}
 
-        private static String detectStoneShape(String path) {
-                String shape = shapeKey(path);
-                return shape.isEmpty() ? "" : shape;
-        }
+		/**
+		 * Whether every category was arranged when this index was built.
+		 */
+		boolean isComplete() {
+			return complete;
+		}
 
-        private static String detectCopperBase(String path) {
-                if (path.isEmpty()) {
-                        return "";
-                }
-
-                String normalized = normalizedVariantKey(path);
-                String baseCandidate = normalized;
-                for (String suffix : COMMON_SHAPE_SUFFIXES) {
-                        if (baseCandidate.endsWith("_" + suffix)) {
-                                baseCandidate = baseCandidate.substring(0, baseCandidate.length() - suffix.length() - 1);
-                                break;
-                        }
-                }
-
-                String best = "";
-                int bestLength = -1;
-                List<String> candidates = List.of(path, normalized, baseCandidate);
-                for (String candidate : candidates) {
-                        if (candidate.isEmpty()) {
-                                continue;
-                        }
-                        for (String base : COPPER_BASES) {
-                                if (matchesSegment(candidate, base) && base.length() > bestLength) {
-                                        best = base;
-                                        bestLength = base.length();
-                                }
-                        }
-                }
-
-                return best;
-        }
+		/**
+		 * Returns the index of the category in {@link #definitions()} showing the item, or {@link #ABSENT}.
+		 */
+		int category(int rawId) {
+			return rawId < categories.length ? categories[rawId] : ABSENT;
+		}
 
-        private static String detectCopperShape(String path) {
-                String shape = shapeKey(path);
-                return shape.isEmpty() ? "" : shape;
-        }
+		int slot(int rawId) {
+			return slots[rawId];
+		}
+	}
 
-        private static String detectCopperVariant(String path) {
-                if (path.isEmpty()) {
-                        return "";
-                }
-
-                String[] parts = path.split("_");
-                if (parts.length == 0) {
-                        return "";
-                }
-
-                List<String> prefixes = new ArrayList<>();
-                for (String part : parts) {
-                        if (VARIANT_PREFIXES.contains(part)) {
-                                prefixes.add(part);
-                        } else {
-                                break;
-                        }
-                }
-
-                if (prefixes.isEmpty()) {
-                        return "";
-                }
-
-                String first = prefixes.get(0);
-                if ("waxed".equals(first)) {
-                        if (prefixes.size() >= 2 && COPPER_STAGE_PREFIXES.contains(prefixes.get(1))) {
-                                return "waxed_" + prefixes.get(1);
-                        }
-                        return "waxed";
-                }
-
-                if (COPPER_STAGE_PREFIXES.contains(first)) {
-                        return first;
-                }
-
-                return first;
-        }
+	/**
+	 * One category's routed stacks, arranged on first access and memoised. Arrangers are pure, but arranging is done
+	 * at most once even when several threads ask at the same time. The packed routed stacks are kept so that later
+	 * snapshots can share the category or derive from it; categories loaded from the layout cache have none.
+	 */
+	private static final class CategoryStacks {
+		private final CategoryDefinition definition;
+		private final PrecomputedLayout.Variant precomputed;
+		private final PackedStacks input;
+		private List<ItemStack> routed;
+		private volatile PackedStacks arranged;
+
+		private CategoryStacks(CategoryDefinition definition, PrecomputedLayout.Variant precomputed, PackedStacks input,
+				List<ItemStack> routed, PackedStacks arranged) {
+			this.definition = definition;
+			this.precomputed = precomputed;
+			this.input = input;
+			this.routed = routed;
+			this.arranged = arranged;
+		}
+
+		static CategoryStacks routed(CategoryDefinition definition, List<ItemStack> routed, PackedStacks input,
+				PrecomputedLayout.Variant precomputed) {
+			return new CategoryStacks(definition, precomputed, input, routed, null);
+		}
 
-        private static String detectVariantPrefix(String path) {
-                if (path.isEmpty()) {
-                        return "";
-                }
+		/**
+		 * Creates a category whose routed stacks are materialised from {@code input} when it is arranged.
+		 */
+		static CategoryStacks derived(CategoryDefinition definition, PackedStacks input,
+				PrecomputedLayout.Variant precomputed) {
+			return new CategoryStacks(definition, precomputed, input, null, null);
+		}
 
-                String[] parts = path.split("_");
-                if (parts.length == 0) {
-                        return "";
-                }
+		static CategoryStacks arranged(PackedStacks input, PackedStacks arranged) {
+			return new CategoryStacks(null, null, input, null, arranged);
+		}
 
-                String candidate = parts[0];
-                return VARIANT_PREFIXES.contains(candidate) ? candidate : "";
-        }
+		static CategoryStacks arranged(PackedStacks arranged) {
+			return arranged(null, arranged);
+		}
 
-        private static String familyKey(String path) {
-                String normalized = normalizedVariantKey(path);
-                for (String suffix : COMMON_SHAPE_SUFFIXES) {
-                        if (normalized.endsWith("_" + suffix)) {
-				return normalized.substring(0, normalized.length() - suffix.length() - 1);
+		PackedStacks arranged() {
+			PackedStacks result = arranged;
+			if (result != null) {
+				return result;
+			}
+
+			synchronized (this) {
+				if (arranged == null) {
+					arranged = arrange(definition, routed, input, precomputed);
+					routed = null;
+				}
+				return arranged;
 			}
 		}
-		return normalized;
 	}
 
-	private static String shapeKey(String path) {
-		String normalized = normalizedVariantKey(path);
-		for (String suffix : COMMON_SHAPE_SUFFIXES) {
-			if (normalized.endsWith("_" + suffix)) {
-				return suffix;
-			}
+	/**
+	 * Arranges the routed stacks for {@code definition}, reusing its last arrangement or the precomputed contents when
+	 * either was arranged from the same stacks. {@code routed} may be {@code null}, in which case it is materialised
+	 * from {@code input} only if the arranger has to run.
+	 */
+	private static PackedStacks arrange(CategoryDefinition definition, List<ItemStack> routed, PackedStacks input,
+			PrecomputedLayout.Variant precomputed) {
+		PackedStacks arranged = definition.memoised(input);
+		if (arranged != null) {
+			return arranged;
+		}
+
+		List<ItemStack> stacks = routed != null ? routed : input.toList();
+		arranged = precomputed != null ? precomputed.arranged(definition.identifier(), stacks) : null;
+		if (arranged == null) {
+			arranged = definition.arrange(stacks);
 		}
-		return "";
+		definition.remember(input, arranged);
+		return arranged;
 	}
 
-	private static boolean matchesSegment(String path, String segment) {
-		if (segment.isEmpty()) {
-			return false;
+	private static PrecomputedLayout.Variant precomputedVariant(FeatureSet features, boolean hasPermissions) {
+		PrecomputedLayout layout = PrecomputedLayout.get(LAYOUT_VERSION);
+		return layout != null ? layout.variant(features, hasPermissions) : null;
+	}
+
+	private static long tokensOf(ItemStack stack) {
+		return CLASSIFICATION.tokens(stack.getItem());
+	}
+
+	/**
+	 * Computes the token bits of {@code item}: every keyword family found in its path plus the derived tokens.
+	 */
+	private static long tokenize(Item item) {
+		long tokens = pathTokens(ItemPathInfo.of(item));
+		if (item instanceof net.minecraft.item.BlockItem) {
+			tokens |= TOKEN_BLOCK_ITEM;
 		}
-		if (path.equals(segment)) {
-			return true;
+		if (item == Items.BREWING_STAND || item == Items.ENCHANTING_TABLE || item == Items.CAULDRON
+				|| item == Items.ENDER_CHEST) {
+			tokens |= TOKEN_WORKSTATION_ITEM;
 		}
-		if (path.startsWith(segment + "_") || path.endsWith("_" + segment)) {
-			return true;
+		if (item == Items.BEACON) {
+			tokens |= TOKEN_UTILITY_ITEM;
 		}
-		return path.contains("_" + segment + "_");
+		return tokens;
 	}
 
-        private static String normalizedVariantKey(String path) {
-                if (path.isEmpty()) {
-                        return path;
-                }
+	/**
+	 * Computes the tokens that follow from an item path alone: its keyword families and the tokens derived from them
+	 * or from the path's detected bases and shapes.
+	 */
+	static long pathTokens(ItemPathInfo info) {
+		long tokens = KEYWORDS.scan(info.path());
+		if ((tokens & FAMILY_COPPER) == 0 && (tokens & OMIT_FAMILIES) != 0) {
+			tokens |= TOKEN_OMIT;
+		}
+		if (info.woodBaseIndex() >= 0) {
+			tokens |= TOKEN_WOOD_BASE;
+		}
+		if (info.woodShapeIndex() >= 0) {
+			tokens |= TOKEN_WOOD_SHAPE;
+		}
+		if (info.copperBaseIndex() >= 0) {
+			tokens |= TOKEN_COPPER_BASE;
+		}
+		return tokens;
+	}
 
-                String[] parts = path.split("_");
-                int start = 0;
-                while (start < parts.length && VARIANT_PREFIXES.contains(parts[start])) {
-                        start++;
-                }
+	/**
+	 * Whether {@code tokens} keep an item out of every category.
+	 */
+	static boolean isOmitted(long tokens) {
+		return (tokens & TOKEN_OMIT) != 0;
+	}
 
-                if (start == 0) {
-                        return path;
-                }
+	private static ItemPathInfo infoOf(ItemStack stack) {
+		return ItemPathInfo.of(stack.getItem());
+	}
 
-                return String.join("_", Arrays.copyOfRange(parts, start, parts.length));
-        }
+	// Arrangers sort by packed (bucket, shape, variant, base, path) ranks. Within a bucket, shapes, variants and bases
+	// follow their preferred order lists first and then alphabetical order, except shapes missing from the stone and
+	// copper lists, which keep the order in which they first appear.
+
+	/**
+	 * Returns the indices of {@code infos} in wood structure order.
+	 */
+	static int[] woodStructureOrder(ItemPathInfo[] infos) {
+		int count = infos.length;
+		int[] buckets = new int[count];
+		int[] shapes = new int[count];
+		int[] variants = new int[count];
+		int[] bases = new int[count];
+		for (int i = 0; i < count; i++) {
+			ItemPathInfo info = infos[i];
+			if (info.woodBaseIndex() < 0) {
+				buckets[i] = 2;
+				continue;
+			}
+			bases[i] = info.woodBaseIndex();
+			if (info.woodShapeIndex() < 0) {
+				buckets[i] = 1;
+				continue;
+			}
+			shapes[i] = info.woodShapeIndex();
+			variants[i] = VARIANT_RANKS[info.variantIndex() + 1];
+		}
+		return RankedSort.order(count, buckets, shapes, variants, bases, RankedSort.pathRanks(infos));
+	}
+
+	/**
+	 * Returns the indices of {@code infos} in stone block order.
+	 */
+	static int[] stoneBlockOrder(ItemPathInfo[] infos) {
+		int count = infos.length;
+		int[] buckets = new int[count];
+		int[] variants = new int[count];
+		int[] bases = new int[count];
+		String[] leftoverBases = new String[count];
+		int leftoverCount = 0;
+		for (int i = 0; i < count; i++) {
+			ItemPathInfo info = infos[i];
+			if (info.stoneBase().isEmpty()) {
+				buckets[i] = 1;
+				continue;
+			}
+			variants[i] = VARIANT_RANKS[info.variantIndex() + 1];
+			if (info.stoneBaseIndex() >= 0) {
+				bases[i] = info.stoneBaseIndex();
+			} else {
+				bases[i] = -1;
+				leftoverBases[leftoverCount++] = info.stoneBase();
+			}
+		}
 
-        private static boolean containsAny(String haystack, String... needles) {
-                for (String needle : needles) {
-			if (haystack.contains(needle)) {
-				return true;
+		if (leftoverCount > 0) {
+			int[] leftoverRanks = RankedSort.denseRanks(Arrays.copyOf(leftoverBases, leftoverCount));
+			for (int i = 0, leftover = 0; i < count; i++) {
+				if (bases[i] < 0) {
+					bases[i] = ItemPathInfo.STONE_BASES.size() + leftoverRanks[leftover++];
+				}
 			}
 		}
-		return false;
+
+		int[] shapes = shapeRanks(infos, buckets, STONE_SHAPE_INDEX, STONE_SHAPE_ORDER.size());
+		return RankedSort.order(count, buckets, shapes, variants, bases, RankedSort.pathRanks(infos));
 	}
-}
 
+	/**
+	 * Returns the indices of {@code infos} in copper block order.
+	 */
+	static int[] copperBlockOrder(ItemPathInfo[] infos) {
+		int count = infos.length;
+		int[] buckets = new int[count];
+		int[] variants = new int[count];
+		int[] bases = new int[count];
+		for (int i = 0; i < count; i++) {
+			ItemPathInfo info = infos[i];
+			if (info.copperBaseIndex() < 0) {
+				buckets[i] = 1;
+				continue;
+			}
+			variants[i] = COPPER_VARIANT_RANKS[info.copperVariantIndex() + 1];
+			bases[i] = info.copperBaseIndex();
+		}
+
+		int[] shapes = shapeRanks(infos, buckets, COPPER_SHAPE_INDEX, COPPER_SHAPE_ORDER.size());
+		return RankedSort.order(count, buckets, shapes, variants, bases, RankedSort.pathRanks(infos));
+	}
+
+	/**
+	 * Ranks the shape of every stack in bucket {@code 0}: shapes in the preferred order keep their position there and
+	 * the remaining shapes follow in order of first appearance.
+	 */
+	private static int[] shapeRanks(ItemPathInfo[] infos, int[] buckets, int[] preferredIndex, int preferredCount) {
+		int[] shapes = new int[infos.length];
+		int[] firstSeen = new int[preferredIndex.length];
+		Arrays.fill(firstSeen, -1);
+		int next = preferredCount;
+		for (int i = 0; i < infos.length; i++) {
+			if (buckets[i] != 0) {
+				continue;
+			}
+			int slot = infos[i].shapeIndex() + 1;
+			int rank = preferredIndex[slot];
+			if (rank < 0) {
+				if (firstSeen[slot] < 0) {
+					firstSeen[slot] = next++;
+				}
+				rank = firstSeen[slot];
+			}
+			shapes[i] = rank;
+		}
+		return shapes;
+	}
 
+	private static ItemPathInfo[] infosOf(List<ItemStack> stacks) {
+		ItemPathInfo[] infos = new ItemPathInfo[stacks.size()];
+		for (int i = 0; i < infos.length; i++) {
+			infos[i] = infoOf(stacks.get(i));
+		}
+		return infos;
+	}
 
+	private static List<ItemStack> reorder(List<ItemStack> stacks, int[] order) {
+		List<ItemStack> arranged = new ArrayList<>(order.length);
+		for (int index : order) {
+			arranged.add(stacks.get(index));
+		}
+		return arranged;
+	}
 
+        private static List<ItemStack> arrangeVariants(List<ItemStack> stacks) {
+                List<ItemStack> arranged = new ArrayList<>(stacks);
+                arranged.sort(Comparator
+                                .comparing((ItemStack stack) -> infoOf(stack).family())
+                                .thenComparing(stack -> infoOf(stack).shape())
+                                .thenComparing(stack -> infoOf(stack).normalized())
+                                .thenComparing(stack -> infoOf(stack).path()));
+                return arranged;
+        }
+}
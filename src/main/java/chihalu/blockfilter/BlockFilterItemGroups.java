@@ -1,9 +1,8 @@
 package chihalu.blockfilter;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
 
 import net.fabricmc.fabric.api.itemgroup.v1.FabricItemGroup;
 import net.minecraft.item.Item;
@@ -12,6 +11,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.Registry;
 import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
 
 /**
  * Registers the custom creative layout defined by {@link BlockFilterCreativeLayout}.
@@ -35,14 +35,7 @@ public final class BlockFilterItemGroups {
 					FabricItemGroup.builder()
 							.icon(definition::icon)
 							.displayName(Text.translatable(definition.translationKey()))
-							.entries((context, entries) -> {
-								Set<Item> seen = new HashSet<>();
-								for (ItemStack original : BlockFilterCreativeLayout.stacksFor(definition, context)) {
-									if (seen.add(original.getItem())) {
-										entries.add(original.copy(), ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS);
-									}
-								}
-							})
+							.entries((context, entries) -> addEntries(definition, context, entries))
 							.build());
 
 			GROUPS.add(group);
@@ -51,7 +44,41 @@ public final class BlockFilterItemGroups {
 		registered = true;
 	}
 
+	private static void addEntries(BlockFilterCreativeLayout.CategoryDefinition definition,
+			ItemGroup.DisplayContext context, ItemGroup.Entries entries) {
+		PackedStacks stacks = BlockFilterCreativeLayout.stacksFor(definition, context);
+		switch (definition.visibility()) {
+			case PARENT_ONLY -> stacks.forEach(stack -> entries.add(stack, ItemGroup.StackVisibility.PARENT_TAB_ONLY));
+			case PARENT_AND_SEARCH -> stacks.forEach(
+					stack -> entries.add(stack, ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS));
+			case SEARCH_WHEN_UNCOVERED -> {
+				VanillaCreativeContent.SearchCoverage coverage = VanillaCreativeContent.searchCoverage(context);
+				stacks.forEach(stack -> entries.add(stack, coverage.covers(stack)
+						? ItemGroup.StackVisibility.PARENT_TAB_ONLY
+						: ItemGroup.StackVisibility.PARENT_AND_SEARCH_TABS));
+			}
+		}
+	}
+
 	public static List<ItemGroup> getGroups() {
 		return List.copyOf(GROUPS);
 	}
+
+	/**
+	 * Returns the BlockFilter tab showing {@code item} in the current layout and its slot there, or an empty optional
+	 * when no tab shows it or no layout has been built yet. Only tabs whose contents have been built are searched. The
+	 * first call once every tab is built indexes the layout; later calls take constant time.
+	 */
+	public static Optional<ItemLocation> locate(Item item) {
+		return Optional.ofNullable(BlockFilterCreativeLayout.locate(item));
+	}
+
+	/**
+	 * Position of an item in a BlockFilter tab.
+	 *
+	 * @param group id of the tab's item group
+	 * @param slot  index of the item in the tab, counting row by row from the top-left slot
+	 */
+	public record ItemLocation(Identifier group, int slot) {
+	}
 }
@@ -0,0 +1,34 @@
+package chihalu.blockfilter;
+
+/**
+ * 64-bit FNV-1a, for the fingerprints that key cached layouts and skip redundant refreshes. Every value is fed byte
+ * by byte, low byte first; strings are prefixed with their length so that consecutive strings cannot run together.
+ */
+final class FnvHash {
+	static final long OFFSET = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private FnvHash() {
+	}
+
+	static long mix(long hash, int value) {
+		for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+			hash = (hash ^ ((value >>> shift) & 0xFF)) * PRIME;
+		}
+		return hash;
+	}
+
+	static long mix(long hash, long value) {
+		return mix(mix(hash, (int) value), (int) (value >>> Integer.SIZE));
+	}
+
+	static long mix(long hash, String value) {
+		hash = mix(hash, value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xFF)) * PRIME;
+			hash = (hash ^ (c >>> Byte.SIZE)) * PRIME;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,63 @@
+package chihalu.blockfilter;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+
+/**
+ * Caches the token bits of every item, indexed by its raw registry id.
+ *
+ * <p>The item registry is frozen before any creative tab is populated, so the table is sized on first use and every
+ * item is classified at most once. Entries are written without locking: a classifier is a pure function of the item,
+ * so a racing write can only store the same value twice. Classifiers must leave the sign bit clear.
+ */
+final class ItemClassificationTable {
+	private static final long CLASSIFIED = 1L << 63;
+
+	private final ToLongFunction<Item> classifier;
+	private volatile long[] tokens = new long[0];
+
+	ItemClassificationTable(ToLongFunction<Item> classifier) {
+		this.classifier = classifier;
+	}
+
+	long tokens(Item item) {
+		int rawId = Registries.ITEM.getRawId(item);
+		if (rawId < 0) {
+			return classifier.applyAsLong(item);
+		}
+
+		long[] table = tokens;
+		if (rawId >= table.length) {
+			table = grow(rawId);
+		}
+
+		long cached = table[rawId];
+		if (cached != 0L) {
+			return cached & ~CLASSIFIED;
+		}
+
+		long computed = classifier.applyAsLong(item);
+		table[rawId] = computed | CLASSIFIED;
+		return computed;
+	}
+
+	/**
+	 * Forgets every cached entry, for when raw ids have been remapped.
+	 */
+	synchronized void clear() {
+		tokens = new long[0];
+	}
+
+	private synchronized long[] grow(int rawId) {
+		long[] table = tokens;
+		if (rawId < table.length) {
+			return table;
+		}
+		long[] grown = Arrays.copyOf(table, Math.max(rawId + 1, Registries.ITEM.size()));
+		tokens = grown;
+		return grown;
+	}
+}
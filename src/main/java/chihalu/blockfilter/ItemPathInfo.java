@@ -0,0 +1,347 @@
+package chihalu.blockfilter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+
+/**
+ * Naming facts derived from an item's registry path, computed once per item and shared by every filter and arranger.
+ */
+final class ItemPathInfo {
+	static final List<String> WOOD_BASES = List.of(
+			"oak", "spruce", "birch", "jungle", "acacia", "dark_oak", "mangrove", "crimson", "warped", "bamboo",
+			"cherry", "pale_oak"
+	);
+	static final List<String> WOOD_SHAPE_ORDER = List.of(
+			"log", "wood", "stem", "hyphae",
+			"planks", "mosaic", "stairs", "slab",
+			"fence", "fence_gate", "door", "trapdoor", "pressure_plate", "button",
+			"sign", "wall_sign", "hanging_sign",
+			"boat", "chest_boat", "raft", "chest_raft",
+			"leaves", "sapling", "propagule", "roots", "fungus"
+	);
+	static final List<String> COMMON_SHAPE_SUFFIXES = List.of(
+			"pressure_plate", "fence_gate", "hanging_sign", "wall_sign", "trapdoor", "door",
+			"stairs", "slab", "button", "fence", "gate", "wall", "pillar", "planks",
+			"mosaic", "log", "wood", "stem", "hyphae", "boat", "chest_boat",
+			"raft", "chest_raft", "leaves", "sapling", "propagule", "roots", "fungus",
+			"panel", "tile", "tiles", "bricks", "brick", "pane", "glass", "bars",
+			"chain", "torch", "lantern", "campfire", "beacon", "grate", "bulb"
+	);
+	static final List<String> STONE_BASES = List.of(
+			"stone", "smooth_stone", "stone_brick", "stone_bricks", "cobblestone", "granite", "polished_granite",
+			"diorite", "polished_diorite", "andesite", "polished_andesite", "tuff", "polished_tuff", "calcite",
+			"dripstone_block", "basalt", "smooth_basalt", "blackstone", "polished_blackstone",
+			"polished_blackstone_brick", "polished_blackstone_bricks", "blackstone_brick", "blackstone_bricks",
+			"deepslate", "cobbled_deepslate", "polished_deepslate", "deepslate_brick", "deepslate_bricks",
+			"deepslate_tile", "deepslate_tiles", "mud_brick", "mud_bricks", "packed_mud", "quartz", "smooth_quartz",
+			"quartz_brick", "quartz_bricks", "cut_quartz", "end_stone", "end_stone_bricks", "purpur", "prismarine",
+			"prismarine_bricks", "dark_prismarine", "resin_bricks"
+	);
+	static final List<String> COPPER_BASES = List.of(
+			"copper_block", "cut_copper", "chiseled_copper", "copper", "raw_copper_block"
+	);
+	private static final ShapeSuffixTrie SHAPE_SUFFIXES = new ShapeSuffixTrie(COMMON_SHAPE_SUFFIXES);
+	private static final List<String> COPPER_STAGE_PREFIXES = List.of(
+			"exposed", "weathered", "oxidized"
+	);
+	private static final List<String> WAXED_COPPER_STAGES = List.of(
+			"waxed_exposed", "waxed_weathered", "waxed_oxidized"
+	);
+	private static final String WAXED = "waxed";
+	static final List<String> VARIANT_PREFIXES = List.of(
+			"waxed", "exposed", "weathered", "oxidized", "stripped", "mossy", "cracked", "infested",
+			"chiseled", "smooth", "polished", "cut"
+	);
+	/** Every value {@link #copperVariant()} can take besides the empty string. */
+	static final List<String> COPPER_VARIANTS = Stream.concat(VARIANT_PREFIXES.stream(), WAXED_COPPER_STAGES.stream())
+			.toList();
+	private static final ItemPathInfo EMPTY = parse("");
+
+	private static volatile ItemPathInfo[] cache = new ItemPathInfo[0];
+
+	private final String path;
+	private final int[] tokenStarts;
+	private final String normalized;
+	private final String family;
+	private final String stoneBase;
+	private final int shapeIndex;
+	private final int variantIndex;
+	private final int copperVariantIndex;
+	private final int woodBaseIndex;
+	private final int woodShapeIndex;
+	private final int stoneBaseIndex;
+	private final int copperBaseIndex;
+
+	private ItemPathInfo(String path, int[] tokenStarts, String normalized, String family, String stoneBase,
+			int shapeIndex, int variantIndex, int copperVariantIndex, int woodBaseIndex, int woodShapeIndex,
+			int stoneBaseIndex, int copperBaseIndex) {
+		this.path = path;
+		this.tokenStarts = tokenStarts;
+		this.normalized = normalized;
+		this.family = family;
+		this.stoneBase = stoneBase;
+		this.shapeIndex = shapeIndex;
+		this.variantIndex = variantIndex;
+		this.copperVariantIndex = copperVariantIndex;
+		this.woodBaseIndex = woodBaseIndex;
+		this.woodShapeIndex = woodShapeIndex;
+		this.stoneBaseIndex = stoneBaseIndex;
+		this.copperBaseIndex = copperBaseIndex;
+	}
+
+	/**
+	 * Returns the cached info for {@code item}, computing it on first use. Lookups are indexed by raw registry id.
+	 */
+	static ItemPathInfo of(Item item) {
+		int rawId = Registries.ITEM.getRawId(item);
+		if (rawId < 0) {
+			return compute(item);
+		}
+
+		ItemPathInfo[] table = cache;
+		if (rawId >= table.length) {
+			table = grow(rawId);
+		}
+
+		ItemPathInfo info = table[rawId];
+		if (info == null) {
+			info = compute(item);
+			table[rawId] = info;
+		}
+		return info;
+	}
+
+	static ItemPathInfo parse(String path) {
+		int length = path.length();
+		int normalizedStart = PathTokens.skipPrefixTokens(path, VARIANT_PREFIXES);
+		int normalizedEnd = length;
+		if (normalizedStart > 0) {
+			// Mirror String.split, which drops trailing empty tokens once a prefix has been stripped.
+			while (normalizedEnd > normalizedStart && path.charAt(normalizedEnd - 1) == PathTokens.SEPARATOR) {
+				normalizedEnd--;
+			}
+		}
+		String normalized = path.substring(normalizedStart, normalizedEnd);
+
+		int shapeIndex = SHAPE_SUFFIXES.longestSuffix(path, normalizedStart, normalizedEnd);
+		int familyEnd = shapeIndex < 0 ? normalizedEnd
+				: normalizedEnd - COMMON_SHAPE_SUFFIXES.get(shapeIndex).length() - 1;
+		String family = familyEnd == normalizedEnd ? normalized : path.substring(normalizedStart, familyEnd);
+
+		int stoneBaseIndex = -1;
+		int copperBaseIndex = -1;
+		String stoneBase = "";
+		if (length > 0) {
+			stoneBaseIndex = detectBase(path, normalizedStart, normalizedEnd, familyEnd, STONE_BASES);
+			if (stoneBaseIndex >= 0) {
+				stoneBase = STONE_BASES.get(stoneBaseIndex);
+			} else {
+				stoneBase = family.isEmpty() ? normalized : family;
+			}
+			copperBaseIndex = detectBase(path, normalizedStart, normalizedEnd, familyEnd, COPPER_BASES);
+		}
+
+		return new ItemPathInfo(path, tokenStarts(path), normalized, family, stoneBase, shapeIndex,
+				detectVariantPrefix(path), detectCopperVariant(path), detectWoodBase(path), detectWoodShape(path),
+				stoneBaseIndex, copperBaseIndex);
+	}
+
+	private static ItemPathInfo compute(Item item) {
+		Identifier id = Registries.ITEM.getId(item);
+		return id == null ? EMPTY : parse(id.getPath().toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Forgets every cached entry, for when raw ids have been remapped.
+	 */
+	static synchronized void clearCache() {
+		cache = new ItemPathInfo[0];
+	}
+
+	private static synchronized ItemPathInfo[] grow(int rawId) {
+		ItemPathInfo[] table = cache;
+		if (rawId < table.length) {
+			return table;
+		}
+		ItemPathInfo[] grown = Arrays.copyOf(table, Math.max(rawId + 1, Registries.ITEM.size()));
+		cache = grown;
+		return grown;
+	}
+
+	/** Lowercased registry path. */
+	String path() {
+		return path;
+	}
+
+	int tokenCount() {
+		return tokenStarts.length;
+	}
+
+	/** Offset of the first character of the {@code index}-th {@code _}-separated token. */
+	int tokenStart(int index) {
+		return tokenStarts[index];
+	}
+
+	/** Path with leading variant prefixes such as {@code waxed_} or {@code polished_} removed. */
+	String normalized() {
+		return normalized;
+	}
+
+	/** Normalized path without its shape suffix. */
+	String family() {
+		return family;
+	}
+
+	String shape() {
+		return nameOf(COMMON_SHAPE_SUFFIXES, shapeIndex);
+	}
+
+	/** Index of {@link #shape()} in {@link #COMMON_SHAPE_SUFFIXES}, or {@code -1}. */
+	int shapeIndex() {
+		return shapeIndex;
+	}
+
+	/** First variant prefix, or an empty string. */
+	String variant() {
+		return nameOf(VARIANT_PREFIXES, variantIndex);
+	}
+
+	/** Index of {@link #variant()} in {@link #VARIANT_PREFIXES}, or {@code -1}. */
+	int variantIndex() {
+		return variantIndex;
+	}
+
+	/** Oxidation stage including the {@code waxed_} marker, or the first variant prefix for other blocks. */
+	String copperVariant() {
+		return nameOf(COPPER_VARIANTS, copperVariantIndex);
+	}
+
+	/** Index of {@link #copperVariant()} in {@link #COPPER_VARIANTS}, or {@code -1}. */
+	int copperVariantIndex() {
+		return copperVariantIndex;
+	}
+
+	String woodBase() {
+		return nameOf(WOOD_BASES, woodBaseIndex);
+	}
+
+	int woodBaseIndex() {
+		return woodBaseIndex;
+	}
+
+	String woodShape() {
+		return nameOf(WOOD_SHAPE_ORDER, woodShapeIndex);
+	}
+
+	int woodShapeIndex() {
+		return woodShapeIndex;
+	}
+
+	/** Known stone base, or the family key for stone blocks outside {@link #STONE_BASES}. */
+	String stoneBase() {
+		return stoneBase;
+	}
+
+	/** Index of {@link #stoneBase()} in {@link #STONE_BASES}, or {@code -1} when it fell back to the family key. */
+	int stoneBaseIndex() {
+		return stoneBaseIndex;
+	}
+
+	String copperBase() {
+		return nameOf(COPPER_BASES, copperBaseIndex);
+	}
+
+	int copperBaseIndex() {
+		return copperBaseIndex;
+	}
+
+	private static String nameOf(List<String> vocabulary, int index) {
+		return index < 0 ? "" : vocabulary.get(index);
+	}
+
+	private static int[] tokenStarts(String path) {
+		if (path.isEmpty()) {
+			return new int[0];
+		}
+		int count = 1;
+		for (int i = 0; i < path.length(); i++) {
+			if (path.charAt(i) == '_') {
+				count++;
+			}
+		}
+		int[] starts = new int[count];
+		int token = 1;
+		for (int i = 0; i < path.length(); i++) {
+			if (path.charAt(i) == '_') {
+				starts[token++] = i + 1;
+			}
+		}
+		return starts;
+	}
+
+	static int detectWoodBase(String path) {
+		return longestSegment(path, 0, path.length(), WOOD_BASES, -1);
+	}
+
+	static int detectWoodShape(String path) {
+		for (int i = 0; i < WOOD_SHAPE_ORDER.size(); i++) {
+			if (PathTokens.containsSegment(path, 0, path.length(), WOOD_SHAPE_ORDER.get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the longest base that occurs as a segment of the full path, its normalized form or its
+	 * family. Earlier candidates win ties.
+	 */
+	static int detectBase(String path, int normalizedStart, int normalizedEnd, int familyEnd,
+			List<String> bases) {
+		int best = longestSegment(path, 0, path.length(), bases, -1);
+		best = longestSegment(path, normalizedStart, normalizedEnd, bases, best);
+		return longestSegment(path, normalizedStart, familyEnd, bases, best);
+	}
+
+	private static int longestSegment(String path, int from, int to, List<String> bases, int best) {
+		if (from >= to) {
+			return best;
+		}
+		int bestLength = best < 0 ? -1 : bases.get(best).length();
+		for (int i = 0; i < bases.size(); i++) {
+			String base = bases.get(i);
+			if (base.length() > bestLength && PathTokens.containsSegment(path, from, to, base)) {
+				best = i;
+				bestLength = base.length();
+			}
+		}
+		return best;
+	}
+
+	static int detectCopperVariant(String path) {
+		int length = path.length();
+		int firstEnd = PathTokens.tokenEnd(path, 0, length);
+		int first = PathTokens.indexOf(path, 0, firstEnd, VARIANT_PREFIXES);
+		if (first < 0 || !WAXED.equals(VARIANT_PREFIXES.get(first))) {
+			return first;
+		}
+		if (firstEnd < length) {
+			int secondEnd = PathTokens.tokenEnd(path, firstEnd + 1, length);
+			int stage = PathTokens.indexOf(path, firstEnd + 1, secondEnd, COPPER_STAGE_PREFIXES);
+			if (stage >= 0) {
+				return VARIANT_PREFIXES.size() + stage;
+			}
+		}
+		return first;
+	}
+
+	static int detectVariantPrefix(String path) {
+		return PathTokens.indexOf(path, 0, PathTokens.tokenEnd(path, 0, path.length()), VARIANT_PREFIXES);
+	}
+}
@@ -0,0 +1,82 @@
+package chihalu.blockfilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagKey;
+
+/**
+ * Members of one item tag as a bitset over raw item ids, so that rules test membership with a single bit.
+ *
+ * <p>Every tag referenced by a rule gets one shared instance. Bitsets are compiled whenever tags are loaded or item
+ * ids are remapped; until then a tag has no members.
+ */
+final class ItemTagBitset {
+	private static final Map<TagKey<Item>, ItemTagBitset> BY_TAG = new ConcurrentHashMap<>();
+
+	private final TagKey<Item> tag;
+	private volatile long[] bits = new long[0];
+
+	private ItemTagBitset(TagKey<Item> tag) {
+		this.tag = tag;
+	}
+
+	static ItemTagBitset of(TagKey<Item> tag) {
+		return BY_TAG.computeIfAbsent(tag, ItemTagBitset::new);
+	}
+
+	/**
+	 * Compiles every referenced tag from the current registry and returns whether any membership changed.
+	 */
+	static synchronized boolean compileAll() {
+		boolean changed = false;
+		for (ItemTagBitset bitset : BY_TAG.values()) {
+			long[] compiled = bitset.compile();
+			if (!Arrays.equals(compiled, bitset.bits)) {
+				bitset.bits = compiled;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Hashes the members of every referenced tag, for keying layouts routed with them.
+	 */
+	static long fingerprint() {
+		List<ItemTagBitset> bitsets = new ArrayList<>(BY_TAG.values());
+		bitsets.sort(Comparator.comparing(bitset -> bitset.tag.id().toString()));
+		long hash = FnvHash.OFFSET;
+		for (ItemTagBitset bitset : bitsets) {
+			hash = FnvHash.mix(hash, bitset.tag.id().toString());
+			for (long word : bitset.bits) {
+				hash = FnvHash.mix(hash, word);
+			}
+		}
+		return hash;
+	}
+
+	boolean contains(int rawId) {
+		long[] words = bits;
+		int word = rawId >>> 6;
+		return rawId >= 0 && word < words.length && (words[word] & (1L << rawId)) != 0L;
+	}
+
+	private long[] compile() {
+		long[] compiled = new long[(Registries.ITEM.size() + 63) >>> 6];
+		for (RegistryEntry<Item> entry : Registries.ITEM.iterateEntries(tag)) {
+			int rawId = Registries.ITEM.getRawId(entry.value());
+			if (rawId >= 0) {
+				compiled[rawId >>> 6] |= 1L << rawId;
+			}
+		}
+		return compiled;
+	}
+}
@@ -0,0 +1,135 @@
+package chihalu.blockfilter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton that reports every keyword family contained in an item path with a single scan.
+ */
+final class KeywordMatcher {
+	private static final int ASCII = 128;
+
+	private final byte[] charClasses;
+	private final int alphabetSize;
+	private final int[] transitions;
+	private final long[] outputs;
+
+	private KeywordMatcher(byte[] charClasses, int alphabetSize, int[] transitions, long[] outputs) {
+		this.charClasses = charClasses;
+		this.alphabetSize = alphabetSize;
+		this.transitions = transitions;
+		this.outputs = outputs;
+	}
+
+	static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the union of the family bits of every keyword that occurs anywhere in {@code text}.
+	 */
+	long scan(CharSequence text) {
+		long families = 0L;
+		int state = 0;
+		for (int i = 0, length = text.length(); i < length; i++) {
+			char c = text.charAt(i);
+			int charClass = c < ASCII ? charClasses[c] : 0;
+			state = transitions[state * alphabetSize + charClass];
+			families |= outputs[state];
+		}
+		return families;
+	}
+
+	static final class Builder {
+		private final List<String> keywords = new ArrayList<>();
+		private final List<Long> families = new ArrayList<>();
+
+		private Builder() {
+		}
+
+		Builder add(long family, String... words) {
+			for (String word : words) {
+				if (word.isEmpty()) {
+					throw new IllegalArgumentException("Empty keyword for family " + Long.toBinaryString(family));
+				}
+				for (int i = 0; i < word.length(); i++) {
+					if (word.charAt(i) >= ASCII) {
+						throw new IllegalArgumentException("Non-ASCII keyword: " + word);
+					}
+				}
+				keywords.add(word);
+				families.add(family);
+			}
+			return this;
+		}
+
+		KeywordMatcher build() {
+			// Class 0 is reserved for characters that never appear in a keyword.
+			byte[] charClasses = new byte[ASCII];
+			int alphabetSize = 1;
+			for (String keyword : keywords) {
+				for (int i = 0; i < keyword.length(); i++) {
+					char c = keyword.charAt(i);
+					if (charClasses[c] == 0) {
+						charClasses[c] = (byte) alphabetSize++;
+					}
+				}
+			}
+
+			// Trie construction; -1 marks a missing edge until the failure links fill it in.
+			int capacity = 1;
+			for (String keyword : keywords) {
+				capacity += keyword.length();
+			}
+			int[] transitions = new int[capacity * alphabetSize];
+			Arrays.fill(transitions, -1);
+			long[] outputs = new long[capacity];
+			int stateCount = 1;
+			for (int k = 0; k < keywords.size(); k++) {
+				String keyword = keywords.get(k);
+				int state = 0;
+				for (int i = 0; i < keyword.length(); i++) {
+					int slot = state * alphabetSize + charClasses[keyword.charAt(i)];
+					if (transitions[slot] < 0) {
+						transitions[slot] = stateCount++;
+					}
+					state = transitions[slot];
+				}
+				outputs[state] |= families.get(k);
+			}
+
+			// Breadth-first pass turning the trie into a full DFA and merging outputs along failure links.
+			int[] failure = new int[stateCount];
+			ArrayDeque<Integer> queue = new ArrayDeque<>();
+			for (int c = 0; c < alphabetSize; c++) {
+				int next = transitions[c];
+				if (next < 0) {
+					transitions[c] = 0;
+				} else {
+					failure[next] = 0;
+					queue.add(next);
+				}
+			}
+			while (!queue.isEmpty()) {
+				int state = queue.poll();
+				outputs[state] |= outputs[failure[state]];
+				for (int c = 0; c < alphabetSize; c++) {
+					int slot = state * alphabetSize + c;
+					int next = transitions[slot];
+					int fallback = transitions[failure[state] * alphabetSize + c];
+					if (next < 0) {
+						transitions[slot] = fallback;
+					} else {
+						failure[next] = fallback;
+						queue.add(next);
+					}
+				}
+			}
+
+			return new KeywordMatcher(charClasses, alphabetSize,
+					Arrays.copyOf(transitions, stateCount * alphabetSize), Arrays.copyOf(outputs, stateCount));
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package chihalu.blockfilter;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.registry.Registries;
+import net.minecraft.resource.featuretoggle.FeatureFlags;
+import net.minecraft.resource.featuretoggle.FeatureSet;
+import net.minecraft.util.Identifier;
+
+/**
+ * On-disk cache of arranged layouts under {@code .cache/blockfilter}, one file per fingerprint.
+ *
+ * <p>A fingerprint covers everything a layout is derived from that can change between launches: the item registry
+ * in raw id order, the enabled features, the permissions flag, the layout version with its category ids, the members
+ * of the tags used by rules and the mod version. Files store each category's raw item ids and are read through a
+ * memory-mapped channel. Layouts with component-bearing stacks are not cached.
+ */
+final class LayoutCache {
+	private static final int MAGIC = 0x42464C43;
+	private static final int FORMAT = 1;
+	private static final int MAX_FILES = 8;
+	private static final String FILE_PREFIX = "layout-";
+	private static final String FILE_SUFFIX = ".bin";
+
+	private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "BlockFilter Layout Cache");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Set<Long> MISSES = ConcurrentHashMap.newKeySet();
+	private static Long registryFingerprint;
+
+	private LayoutCache() {
+	}
+
+	/**
+	 * Computes the fingerprint of a layout. The registry, tag and mod version part is hashed once and kept until
+	 * {@link #forgetRegistryFingerprint()}; only the context and layout version are mixed in on every call.
+	 */
+	static long fingerprint(FeatureSet features, boolean hasPermissions, int layoutVersion,
+			List<Identifier> categories) {
+		long hash = registryFingerprint();
+		List<Identifier> featureIds = new ArrayList<>(FeatureFlags.FEATURE_MANAGER.toId(features));
+		featureIds.sort(Comparator.comparing(Identifier::toString));
+		hash = FnvHash.mix(hash, featureIds.size());
+		for (Identifier featureId : featureIds) {
+			hash = FnvHash.mix(hash, featureId.toString());
+		}
+
+		hash = FnvHash.mix(hash, hasPermissions ? 1 : 0);
+		hash = FnvHash.mix(hash, layoutVersion);
+		for (Identifier category : categories) {
+			hash = FnvHash.mix(hash, category.toString());
+		}
+		return hash;
+	}
+
+	/**
+	 * Drops the memoised registry part of the fingerprint. Registry sync may remap raw ids and tags may be reloaded
+	 * after joining a server, so this is called whenever either happens.
+	 */
+	static synchronized void forgetRegistryFingerprint() {
+		registryFingerprint = null;
+	}
+
+	private static synchronized long registryFingerprint() {
+		if (registryFingerprint == null) {
+			long hash = FnvHash.OFFSET;
+			int itemCount = Registries.ITEM.size();
+			hash = FnvHash.mix(hash, itemCount);
+			for (int rawId = 0; rawId < itemCount; rawId++) {
+				hash = FnvHash.mix(hash, String.valueOf(Registries.ITEM.getId(Registries.ITEM.get(rawId))));
+			}
+			hash = FnvHash.mix(hash, ItemTagBitset.fingerprint());
+			registryFingerprint = FnvHash.mix(hash, modVersion());
+		}
+		return registryFingerprint;
+	}
+
+	/**
+	 * Returns the cached categories for {@code fingerprint} in the order of {@code categories}, or {@code null} when
+	 * there is no usable entry. A miss is remembered so the file system is probed once per fingerprint.
+	 */
+	static Map<Identifier, PackedStacks> load(long fingerprint, List<Identifier> categories) {
+		if (!BlockFilterConfig.get().layoutCache() || MISSES.contains(fingerprint)) {
+			return null;
+		}
+
+		Path file = fileFor(fingerprint);
+		Map<Identifier, PackedStacks> loaded = Files.isRegularFile(file) ? read(file, fingerprint, categories) : null;
+		if (loaded == null) {
+			MISSES.add(fingerprint);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Writes the categories produced by {@code contents} in the background. The supplier runs on the writer thread, so
+	 * it may finish arranging a snapshot there.
+	 */
+	static void store(long fingerprint, Supplier<Map<Identifier, PackedStacks>> contents) {
+		if (!BlockFilterConfig.get().layoutCache()) {
+			return;
+		}
+
+		WRITER.execute(() -> {
+			try {
+				Map<Identifier, PackedStacks> categories = contents.get();
+				for (PackedStacks stacks : categories.values()) {
+					if (stacks.hasCustomStacks()) {
+						return;
+					}
+				}
+				write(fileFor(fingerprint), fingerprint, categories);
+				MISSES.remove(fingerprint);
+			} catch (IOException | RuntimeException e) {
+				BlockFilter.LOGGER.warn("Failed to write the layout cache", e);
+			}
+		});
+	}
+
+	private static Map<Identifier, PackedStacks> read(Path file, long fingerprint, List<Identifier> categories) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getLong() != fingerprint
+					|| buffer.getInt() != categories.size()) {
+				return null;
+			}
+
+			int itemCount = Registries.ITEM.size();
+			Map<Identifier, PackedStacks> loaded = new LinkedHashMap<>();
+			for (Identifier category : categories) {
+				byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+				buffer.get(name);
+				if (!category.toString().equals(new String(name, StandardCharsets.UTF_8))) {
+					return null;
+				}
+
+				int count = buffer.getInt();
+				if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+					return null;
+				}
+				int[] rawIds = new int[count];
+				buffer.asIntBuffer().get(rawIds);
+				buffer.position(buffer.position() + rawIds.length * Integer.BYTES);
+				for (int rawId : rawIds) {
+					if (rawId < 0 || rawId >= itemCount) {
+						return null;
+					}
+				}
+				loaded.put(category, PackedStacks.ofRawIds(rawIds));
+			}
+			return loaded;
+		} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+			BlockFilter.LOGGER.warn("Ignoring unreadable layout cache {}", file, e);
+			return null;
+		}
+	}
+
+	private static void write(Path file, long fingerprint, Map<Identifier, PackedStacks> categories) throws IOException {
+		int size = Integer.BYTES * 3 + Long.BYTES;
+		List<byte[]> names = new ArrayList<>();
+		for (Map.Entry<Identifier, PackedStacks> entry : categories.entrySet()) {
+			byte[] name = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+			names.add(name);
+			size += Short.BYTES + name.length + Integer.BYTES + entry.getValue().size() * Integer.BYTES;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(FORMAT).putLong(fingerprint).putInt(categories.size());
+		int index = 0;
+		for (PackedStacks stacks : categories.values()) {
+			byte[] name = names.get(index++);
+			buffer.putShort((short) name.length).put(name);
+			int[] rawIds = stacks.rawIds();
+			buffer.putInt(rawIds.length);
+			buffer.asIntBuffer().put(rawIds);
+			buffer.position(buffer.position() + rawIds.length * Integer.BYTES);
+		}
+		buffer.flip();
+
+		Files.createDirectories(file.getParent());
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		prune(file.getParent());
+	}
+
+	/**
+	 * Keeps the {@value #MAX_FILES} most recently written layouts.
+	 */
+	private static void prune(Path directory) throws IOException {
+		List<Path> files;
+		try (Stream<Path> listing = Files.list(directory)) {
+			files = listing.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+			}).toList();
+		}
+		if (files.size() <= MAX_FILES) {
+			return;
+		}
+
+		Map<Path, Long> modified = new LinkedHashMap<>();
+		for (Path path : files) {
+			modified.put(path, Files.getLastModifiedTime(path).toMillis());
+		}
+		List<Path> oldestFirst = new ArrayList<>(files);
+		oldestFirst.sort(Comparator.comparingLong(modified::get));
+		for (Path path : oldestFirst.subList(0, files.size() - MAX_FILES)) {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private static Path fileFor(long fingerprint) {
+		return FabricLoader.getInstance().getGameDir().resolve(".cache").resolve(BlockFilter.MOD_ID)
+				.resolve(FILE_PREFIX + Long.toHexString(fingerprint) + FILE_SUFFIX);
+	}
+
+	private static String modVersion() {
+		return FabricLoader.getInstance().getModContainer(BlockFilter.MOD_ID)
+				.map(mod -> mod.getMetadata().getVersion().getFriendlyString())
+				.orElse("");
+	}
+}
@@ -0,0 +1,49 @@
+package chihalu.blockfilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small bounded map that evicts its least recently used entry and counts lookups. Every operation takes the cache's
+ * lock, which is fine for the handful of entries it is meant to hold.
+ */
+final class LruCache<K, V> {
+	private final LinkedHashMap<K, V> entries;
+	private long hits;
+	private long misses;
+
+	LruCache(int capacity) {
+		this.entries = new LinkedHashMap<>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	synchronized V get(K key) {
+		V value = entries.get(key);
+		if (value != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return value;
+	}
+
+	synchronized void put(K key, V value) {
+		entries.put(key, value);
+	}
+
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	synchronized long hits() {
+		return hits;
+	}
+
+	synchronized long misses() {
+		return misses;
+	}
+}
@@ -0,0 +1,173 @@
+package chihalu.blockfilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+
+/**
+ * Immutable list of creative stacks stored as raw item ids. Stacks that differ from their item's default stack are
+ * kept in a small side table keyed by position, and a fresh {@link ItemStack} is created for every slot on access.
+ */
+final class PackedStacks {
+	static final PackedStacks EMPTY = new PackedStacks(new int[0], new int[0], new ItemStack[0]);
+
+	private static final int CUSTOM = -1;
+
+	private final int[] rawIds;
+	private final int[] customSlots;
+	private final ItemStack[] customStacks;
+	private final int contentHash;
+
+	private PackedStacks(int[] rawIds, int[] customSlots, ItemStack[] customStacks) {
+		this.rawIds = rawIds;
+		this.customSlots = customSlots;
+		this.customStacks = customStacks;
+		this.contentHash = 31 * Arrays.hashCode(rawIds) + Arrays.hashCode(customSlots);
+	}
+
+	static PackedStacks of(List<ItemStack> stacks) {
+		if (stacks.isEmpty()) {
+			return EMPTY;
+		}
+
+		int[] rawIds = new int[stacks.size()];
+		List<ItemStack> custom = new ArrayList<>();
+		int[] customSlots = new int[stacks.size()];
+		for (int i = 0; i < rawIds.length; i++) {
+			ItemStack stack = stacks.get(i);
+			int rawId = Registries.ITEM.getRawId(stack.getItem());
+			if (rawId < 0 || stack.getCount() != 1 || !stack.getComponentChanges().isEmpty()) {
+				customSlots[custom.size()] = i;
+				custom.add(stack);
+				rawId = CUSTOM;
+			}
+			rawIds[i] = rawId;
+		}
+		return new PackedStacks(rawIds, Arrays.copyOf(customSlots, custom.size()), custom.toArray(new ItemStack[0]));
+	}
+
+	/**
+	 * Wraps raw item ids that are known to be valid, such as those read back from the layout cache.
+	 */
+	static PackedStacks ofRawIds(int[] rawIds) {
+		return rawIds.length == 0 ? EMPTY : new PackedStacks(rawIds, new int[0], new ItemStack[0]);
+	}
+
+	int size() {
+		return rawIds.length;
+	}
+
+	boolean isEmpty() {
+		return rawIds.length == 0;
+	}
+
+	boolean hasCustomStacks() {
+		return customStacks.length > 0;
+	}
+
+	/**
+	 * Returns a copy of the raw item ids; slots holding a custom stack are {@code -1}.
+	 */
+	int[] rawIds() {
+		return rawIds.clone();
+	}
+
+	/**
+	 * Returns the raw id of the item in the slot at {@code index}, including slots holding a custom stack.
+	 */
+	int itemRawId(int index) {
+		int rawId = rawIds[index];
+		if (rawId != CUSTOM) {
+			return rawId;
+		}
+		return Registries.ITEM.getRawId(customStacks[Arrays.binarySearch(customSlots, index)].getItem());
+	}
+
+	/**
+	 * Returns a new stack for the slot at {@code index}.
+	 */
+	ItemStack get(int index) {
+		int rawId = rawIds[index];
+		if (rawId != CUSTOM) {
+			return new ItemStack(Registries.ITEM.get(rawId));
+		}
+		return customStacks[Arrays.binarySearch(customSlots, index)].copy();
+	}
+
+	/**
+	 * Hands a new stack for every slot to {@code action}, in order.
+	 */
+	void forEach(Consumer<ItemStack> action) {
+		int custom = 0;
+		for (int rawId : rawIds) {
+			action.accept(rawId != CUSTOM ? new ItemStack(Registries.ITEM.get(rawId)) : customStacks[custom++].copy());
+		}
+	}
+
+	/**
+	 * Returns a new list holding a new stack for every slot.
+	 */
+	List<ItemStack> toList() {
+		List<ItemStack> stacks = new ArrayList<>(rawIds.length);
+		forEach(stacks::add);
+		return stacks;
+	}
+
+	/**
+	 * Returns the slots whose item passes {@code filter}, in order, or this instance when every slot does.
+	 */
+	PackedStacks filter(Predicate<Item> filter) {
+		int[] keptIds = new int[rawIds.length];
+		int[] keptSlots = new int[customSlots.length];
+		List<ItemStack> keptCustom = new ArrayList<>();
+		int kept = 0;
+		int custom = 0;
+		for (int rawId : rawIds) {
+			ItemStack customStack = rawId == CUSTOM ? customStacks[custom++] : null;
+			Item item = customStack != null ? customStack.getItem() : Registries.ITEM.get(rawId);
+			if (!filter.test(item)) {
+				continue;
+			}
+			if (customStack != null) {
+				keptSlots[keptCustom.size()] = kept;
+				keptCustom.add(customStack);
+			}
+			keptIds[kept++] = rawId;
+		}
+
+		if (kept == rawIds.length) {
+			return this;
+		}
+		if (kept == 0) {
+			return EMPTY;
+		}
+		return new PackedStacks(Arrays.copyOf(keptIds, kept), Arrays.copyOf(keptSlots, keptCustom.size()),
+				keptCustom.toArray(new ItemStack[0]));
+	}
+
+	/**
+	 * Whether both lists hold equal stacks in the same order. An order-sensitive hash of the raw ids, computed once
+	 * per list, rejects most mismatches without comparing them.
+	 */
+	boolean sameStacks(PackedStacks other) {
+		if (this == other) {
+			return true;
+		}
+		if (contentHash != other.contentHash || !Arrays.equals(rawIds, other.rawIds)
+				|| !Arrays.equals(customSlots, other.customSlots)) {
+			return false;
+		}
+		for (int i = 0; i < customStacks.length; i++) {
+			if (!ItemStack.areEqual(customStacks[i], other.customStacks[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
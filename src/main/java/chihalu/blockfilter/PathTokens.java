@@ -0,0 +1,79 @@
+package chihalu.blockfilter;
+
+import java.util.List;
+
+/**
+ * Allocation-free helpers that treat an item path as {@code _}-separated tokens addressed by character offsets.
+ *
+ * <p>Ranges are half-open: {@code [from, to)}.
+ */
+final class PathTokens {
+	static final char SEPARATOR = '_';
+
+	private PathTokens() {
+	}
+
+	/**
+	 * Returns the offset just past the token starting at {@code start}, i.e. the next separator or {@code to}.
+	 */
+	static int tokenEnd(String path, int start, int to) {
+		for (int i = start; i < to; i++) {
+			if (path.charAt(i) == SEPARATOR) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	static boolean segmentEquals(String path, int from, int to, String segment) {
+		return to - from == segment.length() && path.regionMatches(from, segment, 0, segment.length());
+	}
+
+	/**
+	 * Returns the index of the vocabulary entry equal to {@code path[from, to)}, or {@code -1}.
+	 */
+	static int indexOf(String path, int from, int to, List<String> vocabulary) {
+		for (int i = 0; i < vocabulary.size(); i++) {
+			if (segmentEquals(path, from, to, vocabulary.get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether {@code segment} occurs in {@code path[from, to)} bounded on both sides by a separator or the
+	 * range edge. The segment itself may contain separators.
+	 */
+	static boolean containsSegment(String path, int from, int to, String segment) {
+		int length = segment.length();
+		if (length == 0) {
+			return false;
+		}
+		for (int at = path.indexOf(segment, from); at >= 0 && at + length <= to; at = path.indexOf(segment, at + 1)) {
+			boolean startsToken = at == from || path.charAt(at - 1) == SEPARATOR;
+			boolean endsToken = at + length == to || path.charAt(at + length) == SEPARATOR;
+			if (startsToken && endsToken) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the offset of the first token in {@code path} that is not one of {@code prefixes}. When every token is
+	 * a prefix the result is {@code path.length()}.
+	 */
+	static int skipPrefixTokens(String path, List<String> prefixes) {
+		int length = path.length();
+		int start = 0;
+		while (start < length) {
+			int end = tokenEnd(path, start, length);
+			if (indexOf(path, start, end, prefixes) < 0) {
+				return start;
+			}
+			start = end + 1;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,298 @@
+package chihalu.blockfilter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.resource.featuretoggle.FeatureFlags;
+import net.minecraft.resource.featuretoggle.FeatureSet;
+import net.minecraft.util.Identifier;
+
+/**
+ * Vanilla layout computed at build time by the data generator and shipped as {@value #RESOURCE_PATH}.
+ *
+ * <p>It records the route taken by every item seen in a source group and, for every known feature combination, the
+ * final contents of each category with a hash of the routed stacks they were arranged from. At runtime items found
+ * here are routed without being classified, and a category whose routed stacks hash the same reuses the stored
+ * contents instead of running its arranger. Anything else, such as modded items, goes through the regular path.
+ */
+final class PrecomputedLayout {
+	static final String RESOURCE_PATH = "assets/" + BlockFilter.MOD_ID + "/precomputed_layout.json";
+	static final int UNKNOWN_ROUTE = Integer.MIN_VALUE;
+	static final int NO_ROUTE = -1;
+
+	private static final PrecomputedLayout MISSING = new PrecomputedLayout(-1, Map.of(), Map.of());
+	private static volatile PrecomputedLayout loaded;
+
+	private final int layoutVersion;
+	private final Map<String, Map<Identifier, Integer>> routes;
+	private final Map<VariantKey, Variant> variants;
+	private final ConcurrentMap<String, int[]> resolvedRoutes = new ConcurrentHashMap<>();
+
+	private PrecomputedLayout(int layoutVersion, Map<String, Map<Identifier, Integer>> routes,
+			Map<VariantKey, Variant> variants) {
+		this.layoutVersion = layoutVersion;
+		this.routes = routes;
+		this.variants = variants;
+	}
+
+	/**
+	 * Returns the shipped layout when it was generated for {@code layoutVersion}, or {@code null}.
+	 */
+	static PrecomputedLayout get(int layoutVersion) {
+		PrecomputedLayout layout = loaded;
+		if (layout == null) {
+			layout = load();
+			loaded = layout;
+		}
+		return layout.layoutVersion == layoutVersion ? layout : null;
+	}
+
+	/**
+	 * Drops route tables resolved against raw item ids, which registry sync may have remapped.
+	 */
+	static void resetResolvedIds() {
+		PrecomputedLayout layout = loaded;
+		if (layout != null) {
+			layout.resolvedRoutes.clear();
+		}
+	}
+
+	static Builder builder(int layoutVersion) {
+		return new Builder(layoutVersion);
+	}
+
+	/**
+	 * Returns the routes known for {@code groupId}, indexed by raw item id; unknown items map to
+	 * {@link #UNKNOWN_ROUTE}.
+	 */
+	int[] routes(String groupId) {
+		return resolvedRoutes.computeIfAbsent(groupId, group -> {
+			int[] table = new int[Registries.ITEM.size()];
+			Arrays.fill(table, UNKNOWN_ROUTE);
+			routes.getOrDefault(group, Map.of()).forEach((itemId, route) -> {
+				Optional<Item> item = Registries.ITEM.getOptionalValue(itemId);
+				if (item.isPresent()) {
+					int rawId = Registries.ITEM.getRawId(item.get());
+					if (rawId >= 0 && rawId < table.length) {
+						table[rawId] = route;
+					}
+				}
+			});
+			return table;
+		});
+	}
+
+	/**
+	 * Returns the stored category contents for the given context, or {@code null} when it was not generated.
+	 */
+	Variant variant(FeatureSet features, boolean hasPermissions) {
+		return variants.get(new VariantKey(Set.copyOf(FeatureFlags.FEATURE_MANAGER.toId(features)), hasPermissions));
+	}
+
+	/**
+	 * Hashes the item ids of {@code routed} in order, or returns {@code null} when a stack is not a default stack and
+	 * therefore cannot be described by its item alone.
+	 */
+	static Long inputHash(List<ItemStack> routed) {
+		long hash = FnvHash.OFFSET;
+		for (ItemStack stack : routed) {
+			if (stack.getCount() != 1 || !stack.getComponentChanges().isEmpty()) {
+				return null;
+			}
+			Identifier id = Registries.ITEM.getId(stack.getItem());
+			hash = FnvHash.mix(hash, id.getNamespace());
+			hash = FnvHash.mix(hash, id.getPath());
+		}
+		return hash;
+	}
+
+	private static PrecomputedLayout load() {
+		Optional<Path> resource = FabricLoader.getInstance().getModContainer(BlockFilter.MOD_ID)
+				.flatMap(mod -> mod.findPath(RESOURCE_PATH));
+		if (resource.isEmpty()) {
+			BlockFilter.LOGGER.debug("No precomputed layout found; classifying every item at runtime");
+			return MISSING;
+		}
+
+		try (Reader reader = Files.newBufferedReader(resource.get())) {
+			return fromJson(JsonParser.parseReader(reader).getAsJsonObject());
+		} catch (IOException | RuntimeException e) {
+			BlockFilter.LOGGER.warn("Ignoring unreadable precomputed layout", e);
+			return MISSING;
+		}
+	}
+
+	private static PrecomputedLayout fromJson(JsonObject json) {
+		int layoutVersion = json.get("layout_version").getAsInt();
+
+		Map<String, Map<Identifier, Integer>> routes = new HashMap<>();
+		for (Map.Entry<String, JsonElement> group : json.getAsJsonObject("routes").entrySet()) {
+			Map<Identifier, Integer> byItem = new HashMap<>();
+			for (Map.Entry<String, JsonElement> route : group.getValue().getAsJsonObject().entrySet()) {
+				byItem.put(parseId(route.getKey()), route.getValue().getAsInt());
+			}
+			routes.put(group.getKey(), byItem);
+		}
+
+		Map<VariantKey, Variant> variants = new HashMap<>();
+		for (JsonElement element : json.getAsJsonArray("variants")) {
+			JsonObject variant = element.getAsJsonObject();
+			List<Identifier> features = new ArrayList<>();
+			for (JsonElement feature : variant.getAsJsonArray("features")) {
+				features.add(parseId(feature.getAsString()));
+			}
+
+			Map<Identifier, Category> categories = new HashMap<>();
+			for (Map.Entry<String, JsonElement> entry : variant.getAsJsonObject("categories").entrySet()) {
+				JsonObject category = entry.getValue().getAsJsonObject();
+				List<Identifier> items = new ArrayList<>();
+				for (JsonElement item : category.getAsJsonArray("items")) {
+					items.add(parseId(item.getAsString()));
+				}
+				categories.put(parseId(entry.getKey()),
+						new Category(Long.parseUnsignedLong(category.get("input_hash").getAsString(), 16), items));
+			}
+			variants.put(new VariantKey(Set.copyOf(features), variant.get("permissions").getAsBoolean()),
+					new Variant(categories));
+		}
+		return new PrecomputedLayout(layoutVersion, routes, variants);
+	}
+
+	private static Identifier parseId(String value) {
+		Identifier id = Identifier.tryParse(value);
+		if (id == null) {
+			throw new JsonParseException("Invalid identifier: " + value);
+		}
+		return id;
+	}
+
+	private record VariantKey(Set<Identifier> features, boolean hasPermissions) {
+	}
+
+	private record Category(long inputHash, List<Identifier> items) {
+	}
+
+	/**
+	 * Stored category contents for one feature combination and permissions flag.
+	 */
+	static final class Variant {
+		private final Map<Identifier, Category> categories;
+
+		private Variant(Map<Identifier, Category> categories) {
+			this.categories = categories;
+		}
+
+		/**
+		 * Returns the stored contents of {@code categoryId} when they were arranged from exactly {@code routed}, or
+		 * {@code null}.
+		 */
+		PackedStacks arranged(Identifier categoryId, List<ItemStack> routed) {
+			Category category = categories.get(categoryId);
+			if (category == null) {
+				return null;
+			}
+			Long hash = inputHash(routed);
+			if (hash == null || hash != category.inputHash()) {
+				return null;
+			}
+
+			int[] rawIds = new int[category.items().size()];
+			for (int i = 0; i < rawIds.length; i++) {
+				Optional<Item> item = Registries.ITEM.getOptionalValue(category.items().get(i));
+				if (item.isEmpty()) {
+					return null;
+				}
+				rawIds[i] = Registries.ITEM.getRawId(item.get());
+			}
+			return PackedStacks.ofRawIds(rawIds);
+		}
+	}
+
+	/**
+	 * Collects routes and category contents while the data generator runs and writes them out as JSON.
+	 */
+	static final class Builder {
+		private final int layoutVersion;
+		private final Map<String, Map<String, Integer>> routes = new TreeMap<>();
+		private final JsonArray variants = new JsonArray();
+
+		private Builder(int layoutVersion) {
+			this.layoutVersion = layoutVersion;
+		}
+
+		void route(String groupId, Item item, int route) {
+			routes.computeIfAbsent(groupId, group -> new TreeMap<>())
+					.put(Registries.ITEM.getId(item).toString(), route);
+		}
+
+		/**
+		 * Adds the contents of every category arranged from default stacks for the given context.
+		 */
+		void variant(FeatureSet features, boolean hasPermissions, Map<Identifier, List<ItemStack>> routed,
+				Map<Identifier, PackedStacks> arranged) {
+			JsonArray featureIds = new JsonArray();
+			FeatureFlags.FEATURE_MANAGER.toId(features).stream()
+					.map(Identifier::toString)
+					.sorted()
+					.forEach(featureIds::add);
+
+			JsonObject categories = new JsonObject();
+			arranged.forEach((categoryId, stacks) -> {
+				Long hash = inputHash(routed.get(categoryId));
+				if (hash == null || stacks.hasCustomStacks()) {
+					return;
+				}
+				JsonArray items = new JsonArray();
+				for (int rawId : stacks.rawIds()) {
+					items.add(Registries.ITEM.getId(Registries.ITEM.get(rawId)).toString());
+				}
+				JsonObject category = new JsonObject();
+				category.addProperty("input_hash", Long.toHexString(hash));
+				category.add("items", items);
+				categories.add(categoryId.toString(), category);
+			});
+
+			JsonObject variant = new JsonObject();
+			variant.add("features", featureIds);
+			variant.addProperty("permissions", hasPermissions);
+			variant.add("categories", categories);
+			variants.add(variant);
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("layout_version", layoutVersion);
+			JsonObject routesJson = new JsonObject();
+			routes.forEach((group, byItem) -> {
+				JsonObject groupJson = new JsonObject();
+				byItem.forEach(groupJson::addProperty);
+				routesJson.add(group, groupJson);
+			});
+			json.add("routes", routesJson);
+			json.add("variants", variants);
+			return json;
+		}
+	}
+}
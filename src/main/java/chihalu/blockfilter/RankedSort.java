@@ -0,0 +1,140 @@
+package chihalu.blockfilter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorts elements by a tuple of non-negative integer ranks by packing each tuple into one {@code long} key.
+ */
+final class RankedSort {
+	private RankedSort() {
+	}
+
+	/**
+	 * Returns the element indices ordered lexicographically by {@code ranks[0][i], ranks[1][i], ...}. Elements with
+	 * equal ranks keep their input order.
+	 */
+	static int[] order(int count, int[]... ranks) {
+		int[] widths = new int[ranks.length];
+		int indexBits = bitsFor(count - 1);
+		int totalBits = indexBits;
+		for (int field = 0; field < ranks.length; field++) {
+			int max = 0;
+			for (int i = 0; i < count; i++) {
+				max = Math.max(max, ranks[field][i]);
+			}
+			widths[field] = bitsFor(max);
+			totalBits += widths[field];
+		}
+
+		if (totalBits > Long.SIZE - 1) {
+			return orderBoxed(count, ranks);
+		}
+
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			long key = 0L;
+			for (int field = 0; field < ranks.length; field++) {
+				key = (key << widths[field]) | ranks[field][i];
+			}
+			keys[i] = (key << indexBits) | i;
+		}
+		Arrays.sort(keys);
+
+		long indexMask = (1L << indexBits) - 1;
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = (int) (keys[i] & indexMask);
+		}
+		return order;
+	}
+
+	/**
+	 * Assigns each path its rank in natural string order; equal paths share a rank.
+	 */
+	static int[] pathRanks(ItemPathInfo[] infos) {
+		String[] sorted = new String[infos.length];
+		for (int i = 0; i < infos.length; i++) {
+			sorted[i] = infos[i].path();
+		}
+		return denseRanks(sorted);
+	}
+
+	/**
+	 * Ranks {@code values} in natural order in place of the strings themselves. The array is sorted as a side effect.
+	 */
+	static int[] denseRanks(String[] values) {
+		String[] original = values.clone();
+		Arrays.sort(values);
+		int unique = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (unique == 0 || !values[i].equals(values[unique - 1])) {
+				values[unique++] = values[i];
+			}
+		}
+		int[] ranks = new int[original.length];
+		for (int i = 0; i < original.length; i++) {
+			ranks[i] = Arrays.binarySearch(values, 0, unique, original[i]);
+		}
+		return ranks;
+	}
+
+	/**
+	 * Returns, for every entry of {@code vocabulary}, its position in {@code preferredOrder}; entries missing from the
+	 * preferred order follow it in alphabetical order. Slot {@code 0} holds the rank of the empty string and slot
+	 * {@code i + 1} the rank of {@code vocabulary.get(i)}.
+	 */
+	static int[] rankTable(List<String> vocabulary, List<String> preferredOrder) {
+		String[] leftovers = vocabulary.stream()
+				.filter(value -> !preferredOrder.contains(value))
+				.sorted(Comparator.naturalOrder())
+				.toArray(String[]::new);
+		int[] table = new int[vocabulary.size() + 1];
+		for (int i = -1; i < vocabulary.size(); i++) {
+			String value = i < 0 ? "" : vocabulary.get(i);
+			int preferred = preferredOrder.indexOf(value);
+			table[i + 1] = preferred >= 0 ? preferred
+					: preferredOrder.size() + (value.isEmpty() ? 0 : Arrays.binarySearch(leftovers, value) + 1);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the position of every entry of {@code vocabulary} in {@code preferredOrder}, or {@code -1} when it is
+	 * missing. Slots are laid out as in {@link #rankTable}.
+	 */
+	static int[] indexTable(List<String> vocabulary, List<String> preferredOrder) {
+		int[] table = new int[vocabulary.size() + 1];
+		table[0] = preferredOrder.indexOf("");
+		for (int i = 0; i < vocabulary.size(); i++) {
+			table[i + 1] = preferredOrder.indexOf(vocabulary.get(i));
+		}
+		return table;
+	}
+
+	private static int[] orderBoxed(int count, int[][] ranks) {
+		Integer[] boxed = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			boxed[i] = i;
+		}
+		Arrays.sort(boxed, (left, right) -> {
+			for (int[] field : ranks) {
+				int compared = Integer.compare(field[left], field[right]);
+				if (compared != 0) {
+					return compared;
+				}
+			}
+			return Integer.compare(left, right);
+		});
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = boxed[i];
+		}
+		return order;
+	}
+
+	private static int bitsFor(int max) {
+		return max <= 0 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(max);
+	}
+}
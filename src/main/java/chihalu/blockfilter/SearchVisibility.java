@@ -0,0 +1,39 @@
+package chihalu.blockfilter;
+
+import java.util.Locale;
+
+/**
+ * Whether a category's stacks are also offered to the creative search tab.
+ */
+enum SearchVisibility {
+	/**
+	 * Stacks only appear in the category itself.
+	 */
+	PARENT_ONLY,
+	/**
+	 * Every stack is also added to the search tab. The default.
+	 */
+	PARENT_AND_SEARCH,
+	/**
+	 * Only stacks that no vanilla group already contributes are added to the search tab. The search tab ends up with
+	 * the same contents as with {@link #PARENT_AND_SEARCH}, without a second copy of every vanilla block to index, at
+	 * the cost of checking every stack against the vanilla search contents. Opt-in.
+	 */
+	SEARCH_WHEN_UNCOVERED;
+
+	String configName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Parses a value written by {@link #configName()}, ignoring case, or returns {@code null}.
+	 */
+	static SearchVisibility byConfigName(String value) {
+		for (SearchVisibility visibility : values()) {
+			if (visibility.configName().equalsIgnoreCase(value.trim())) {
+				return visibility;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,83 @@
+package chihalu.blockfilter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trie over reversed shape suffixes that finds the longest {@code _}-bounded suffix of a path range in one backward
+ * pass. The result does not depend on the order of the suffix table.
+ */
+final class ShapeSuffixTrie {
+	private static final int ASCII = 128;
+
+	private final byte[] charClasses = new byte[ASCII];
+	private final int alphabetSize;
+	private final int[] children;
+	private final int[] terminals;
+
+	ShapeSuffixTrie(List<String> suffixes) {
+		int classes = 1;
+		int capacity = 1;
+		for (String suffix : suffixes) {
+			if (suffix.isEmpty()) {
+				throw new IllegalArgumentException("Empty shape suffix");
+			}
+			capacity += suffix.length();
+			for (int i = 0; i < suffix.length(); i++) {
+				char c = suffix.charAt(i);
+				if (c >= ASCII) {
+					throw new IllegalArgumentException("Non-ASCII shape suffix: " + suffix);
+				}
+				if (charClasses[c] == 0) {
+					charClasses[c] = (byte) classes++;
+				}
+			}
+		}
+		this.alphabetSize = classes;
+
+		int[] nodes = new int[capacity * classes];
+		int[] ends = new int[capacity];
+		Arrays.fill(ends, -1);
+		int nodeCount = 1;
+		for (int index = 0; index < suffixes.size(); index++) {
+			String suffix = suffixes.get(index);
+			int node = 0;
+			for (int i = suffix.length() - 1; i >= 0; i--) {
+				int slot = node * classes + charClasses[suffix.charAt(i)];
+				if (nodes[slot] == 0) {
+					nodes[slot] = nodeCount++;
+				}
+				node = nodes[slot];
+			}
+			if (ends[node] < 0) {
+				ends[node] = index;
+			}
+		}
+		this.children = Arrays.copyOf(nodes, nodeCount * classes);
+		this.terminals = Arrays.copyOf(ends, nodeCount);
+	}
+
+	/**
+	 * Returns the table index of the longest suffix {@code s} such that {@code path[from, to)} ends with
+	 * {@code "_" + s}, or {@code -1} when none matches.
+	 */
+	int longestSuffix(String path, int from, int to) {
+		int best = -1;
+		int node = 0;
+		for (int i = to - 1; i > from; i--) {
+			char c = path.charAt(i);
+			int charClass = c < ASCII ? charClasses[c] : 0;
+			if (charClass == 0) {
+				break;
+			}
+			node = children[node * alphabetSize + charClass];
+			if (node == 0) {
+				break;
+			}
+			if (terminals[node] >= 0 && path.charAt(i - 1) == PathTokens.SEPARATOR) {
+				best = terminals[node];
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,15 @@
+package chihalu.blockfilter;
+
+import net.minecraft.item.ItemGroup;
+
+/**
+ * Implemented by every {@link ItemGroup} through a mixin to remember the display context its entries were last built
+ * for.
+ */
+public interface StampedItemGroup {
+	/**
+	 * Returns the context passed to the last completed {@code updateEntries} call, or {@code null} if the entries have
+	 * never been built.
+	 */
+	ItemGroup.DisplayContext blockfilter$getEntriesContext();
+}
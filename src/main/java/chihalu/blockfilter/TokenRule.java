@@ -0,0 +1,43 @@
+package chihalu.blockfilter;
+
+/**
+ * Category rule compiled to bitmask tests over an item's token bits.
+ *
+ * <p>An item matches when it carries every {@linkplain #all required} token, at least one of the {@linkplain #any
+ * alternative} tokens (if any were given) and none of the {@linkplain #none excluded} tokens.
+ */
+final class TokenRule {
+	private static final TokenRule ANY = new TokenRule(0L, 0L, 0L);
+
+	private final long required;
+	private final long alternatives;
+	private final long excluded;
+
+	private TokenRule(long required, long alternatives, long excluded) {
+		this.required = required;
+		this.alternatives = alternatives;
+		this.excluded = excluded;
+	}
+
+	static TokenRule of() {
+		return ANY;
+	}
+
+	TokenRule all(long tokens) {
+		return new TokenRule(required | tokens, alternatives, excluded);
+	}
+
+	TokenRule any(long tokens) {
+		return new TokenRule(required, alternatives | tokens, excluded);
+	}
+
+	TokenRule none(long tokens) {
+		return new TokenRule(required, alternatives, excluded | tokens);
+	}
+
+	boolean test(long tokens) {
+		return (tokens & required) == required
+				&& (alternatives == 0L || (tokens & alternatives) != 0L)
+				&& (tokens & excluded) == 0L;
+	}
+}
@@ -1,17 +1,18 @@
 package chihalu.blockfilter;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import chihalu.blockfilter.mixin.client.ItemGroupAccessor;
 import chihalu.blockfilter.mixin.client.ItemGroupsAccessor;
 import net.minecraft.item.ItemGroup;
 import net.minecraft.item.ItemStack;
+import net.minecraft.item.ItemStackSet;
 import net.minecraft.registry.Registries;
-import net.minecraft.registry.RegistryWrapper;
 import net.minecraft.resource.featuretoggle.FeatureSet;
 import net.minecraft.util.Identifier;
 
@@ -27,47 +28,196 @@ import net.minecraft.util.Identifier;
 				"food_and_drinks",
 				"ingredients");
 
+	private static volatile SearchCoverage coverage;
+
 	private VanillaCreativeContent() {
 	}
 
-	static Map<String, List<ItemStack>> capture(ItemGroup.DisplayContext context) {
-		FeatureSet features = context.enabledFeatures();
-		boolean hasPermissions = context.hasPermissions();
-		RegistryWrapper.WrapperLookup lookup = context.lookup();
+	/**
+	 * Hands the display stacks of every source group for {@code context} to {@code sink}, in registry order. The
+	 * collection is vanilla's own and is only valid during the call; its stacks may be kept but must not be modified.
+	 *
+	 * <p>Our entries callbacks run from inside vanilla's display context update, after the vanilla groups have been
+	 * rebuilt for the same context, so their entries are reused as they are. Only groups built for another context are
+	 * rebuilt, and those are restored afterwards if they currently serve another context. The active display context
+	 * is never changed, so none of our own entries callbacks run.
+	 */
+	static void capture(ItemGroup.DisplayContext context, BiConsumer<String, Collection<ItemStack>> sink) {
+		for (ItemGroup group : sourceGroups()) {
+			boolean rebuilt = ensureEntries(group, context);
+			sink.accept(Registries.ITEM_GROUP.getId(group).toString(), displayStacks(group));
+			if (rebuilt) {
+				restore(group);
+			}
+		}
+	}
 
-		// Ensure vanilla groups are up-to-date for the current feature flags.
-		ItemGroupsAccessor.blockfilter$invokeUpdateDisplayContext(features, hasPermissions, lookup);
+	/**
+	 * Returns the vanilla groups that feed the layout, in registry order.
+	 */
+	static List<ItemGroup> sourceGroups() {
+		List<ItemGroup> groups = new ArrayList<>();
+		for (ItemGroup group : Registries.ITEM_GROUP) {
+			if (isSourceGroup(Registries.ITEM_GROUP.getId(group))) {
+				groups.add(group);
+			}
+		}
+		return groups;
+	}
 
-		Map<String, List<ItemStack>> captured = new LinkedHashMap<>();
+	/**
+	 * Returns the display stacks of a single source group for {@code context}, restoring the group to the active
+	 * display context afterwards when the two differ. The list holds vanilla's stack instances.
+	 */
+	static List<ItemStack> captureGroupDetached(ItemGroup group, ItemGroup.DisplayContext context) {
+		boolean rebuilt = ensureEntries(group, context);
+		List<ItemStack> stacks = new ArrayList<>(displayStacks(group));
+		if (rebuilt) {
+			restore(group);
+		}
+		return stacks;
+	}
 
-			for (ItemGroup group : Registries.ITEM_GROUP) {
-				Identifier id = Registries.ITEM_GROUP.getId(group);
-				if (id == null || !NAMESPACE_MINECRAFT.equals(id.getNamespace())
-						|| IGNORED_GROUP_PATHS.contains(id.getPath())
-						|| EXCLUDED_GROUP_PATHS.contains(id.getPath())) {
-					continue;
-				}
+	/**
+	 * Returns the stacks that vanilla groups contribute to the search tab for {@code context}. The coverage is
+	 * remembered for the last context asked for, so every category of one update shares it.
+	 */
+	static SearchCoverage searchCoverage(ItemGroup.DisplayContext context) {
+		SearchCoverage last = coverage;
+		if (last != null && last.context == context) {
+			return last;
+		}
 
-			// Skip any custom group we may have registered in this mod namespace.
-			if (BlockFilter.MOD_ID.equals(id.getNamespace())) {
+		SearchCoverage stacks = new SearchCoverage(context);
+		for (ItemGroup group : Registries.ITEM_GROUP) {
+			Identifier id = Registries.ITEM_GROUP.getId(group);
+			if (group.getType() != ItemGroup.Type.CATEGORY || id == null || !NAMESPACE_MINECRAFT.equals(id.getNamespace())) {
 				continue;
 			}
+			boolean rebuilt = ensureEntries(group, context);
+			group.getSearchTabStacks().forEach(stacks::add);
+			if (rebuilt) {
+				restore(group);
+			}
+		}
+		coverage = stacks;
+		return stacks;
+	}
 
-			// Rebuild the group's entries so we always snapshot fresh stacks for this context.
-			((ItemGroupAccessor) group).blockfilter$invokeUpdateEntries(context);
+	/**
+	 * Rebuilds our own groups for the active display context once a layout built outside of the vanilla update has
+	 * been published, and the search tab too unless our groups contribute exactly what they did before. Does nothing
+	 * when the active context has moved on to other features.
+	 */
+	static void refreshLayoutGroups(FeatureSet features, boolean hasPermissions) {
+		ItemGroup.DisplayContext active = ItemGroupsAccessor.blockfilter$getDisplayContext();
+		if (active == null || active.hasPermissions() != hasPermissions || !active.enabledFeatures().equals(features)) {
+			return;
+		}
 
-				List<ItemStack> stacks = new ArrayList<>();
-				for (ItemStack stack : ((ItemGroupAccessor) group).blockfilter$getDisplayStacks()) {
-					if (!stack.getItem().isEnabled(features) || BlockFilterCreativeLayout.shouldOmit(stack)) {
-						continue;
-					}
-					stacks.add(stack.copy());
-				}
+		boolean searchChanged = false;
+		for (ItemGroup group : Registries.ITEM_GROUP) {
+			Identifier id = Registries.ITEM_GROUP.getId(group);
+			if (id != null && BlockFilter.MOD_ID.equals(id.getNamespace())) {
+				long before = searchFingerprint(group);
+				((ItemGroupAccessor) group).blockfilter$invokeUpdateEntries(active);
+				searchChanged |= searchFingerprint(group) != before;
+			}
+		}
+		if (!searchChanged) {
+			return;
+		}
+		// The search tab collects from every category, so it has to follow our groups.
+		for (ItemGroup group : Registries.ITEM_GROUP) {
+			if (group.getType() == ItemGroup.Type.SEARCH) {
+				((ItemGroupAccessor) group).blockfilter$invokeUpdateEntries(active);
+			}
+		}
+	}
 
-			captured.put(id.toString(), stacks);
+	private static long searchFingerprint(ItemGroup group) {
+		return fingerprint(group.getSearchTabStacks());
+	}
+
+	/**
+	 * Hashes {@code stacks} in order by raw item id, count and components.
+	 */
+	static long fingerprint(Iterable<ItemStack> stacks) {
+		long hash = FnvHash.OFFSET;
+		for (ItemStack stack : stacks) {
+			hash = FnvHash.mix(hash, Registries.ITEM.getRawId(stack.getItem()));
+			hash = FnvHash.mix(hash, stack.getCount());
+			hash = FnvHash.mix(hash, stack.getComponentChanges().hashCode());
 		}
+		return hash;
+	}
 
-		return captured;
+	private static Collection<ItemStack> displayStacks(ItemGroup group) {
+		return ((ItemGroupAccessor) group).blockfilter$getDisplayStacks();
+	}
+
+	/**
+	 * Rebuilds the entries of {@code group} unless they were last built for {@code context}. Returns whether the
+	 * group was rebuilt.
+	 */
+	private static boolean ensureEntries(ItemGroup group, ItemGroup.DisplayContext context) {
+		if (isBuiltFor(group, context)) {
+			return false;
+		}
+		((ItemGroupAccessor) group).blockfilter$invokeUpdateEntries(context);
+		return true;
+	}
+
+	private static void restore(ItemGroup group) {
+		ItemGroup.DisplayContext active = ItemGroupsAccessor.blockfilter$getDisplayContext();
+		if (active != null) {
+			ensureEntries(group, active);
+		}
+	}
+
+	private static boolean isBuiltFor(ItemGroup group, ItemGroup.DisplayContext context) {
+		ItemGroup.DisplayContext built = ((StampedItemGroup) group).blockfilter$getEntriesContext();
+		return built != null
+				&& !built.doesNotMatch(context.enabledFeatures(), context.hasPermissions(), context.lookup());
+	}
+
+	private static boolean isSourceGroup(Identifier id) {
+		// Only vanilla groups feed the layout; this also skips any group registered in our own namespace.
+		return id != null && NAMESPACE_MINECRAFT.equals(id.getNamespace())
+				&& !IGNORED_GROUP_PATHS.contains(id.getPath())
+				&& !EXCLUDED_GROUP_PATHS.contains(id.getPath());
 	}
-}
 
+	/**
+	 * Stacks contributed to the search tab for one context, compared by item and components like an
+	 * {@link ItemStackSet}. Stacks without component changes, nearly all of them, are kept as raw item ids.
+	 */
+	static final class SearchCoverage {
+		private final ItemGroup.DisplayContext context;
+		private final BitSet plainItems = new BitSet();
+		private final Set<ItemStack> customStacks = ItemStackSet.create();
+
+		private SearchCoverage(ItemGroup.DisplayContext context) {
+			this.context = context;
+		}
+
+		boolean covers(ItemStack stack) {
+			if (!stack.getComponentChanges().isEmpty()) {
+				return customStacks.contains(stack);
+			}
+			int rawId = Registries.ITEM.getRawId(stack.getItem());
+			return rawId >= 0 && plainItems.get(rawId);
+		}
+
+		private void add(ItemStack stack) {
+			if (!stack.getComponentChanges().isEmpty()) {
+				customStacks.add(stack);
+				return;
+			}
+			int rawId = Registries.ITEM.getRawId(stack.getItem());
+			if (rawId >= 0) {
+				plainItems.set(rawId);
+			}
+		}
+	}
+}
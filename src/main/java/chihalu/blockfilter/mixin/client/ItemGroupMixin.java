@@ -0,0 +1,26 @@
+package chihalu.blockfilter.mixin.client;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import chihalu.blockfilter.StampedItemGroup;
+import net.minecraft.item.ItemGroup;
+
+@Mixin(ItemGroup.class)
+public abstract class ItemGroupMixin implements StampedItemGroup {
+	@Unique
+	private ItemGroup.DisplayContext blockfilter$entriesContext;
+
+	@Inject(method = "updateEntries", at = @At("TAIL"))
+	private void blockfilter$stampEntries(ItemGroup.DisplayContext displayContext, CallbackInfo ci) {
+		blockfilter$entriesContext = displayContext;
+	}
+
+	@Override
+	public ItemGroup.DisplayContext blockfilter$getEntriesContext() {
+		return blockfilter$entriesContext;
+	}
+}